@@ -0,0 +1,39 @@
+package org.firstinspires.ftc.teamcode;
+
+// Lets a value move toward its target at no more than rate units per second
+//     Uses the real time between calls rather than assuming a fixed loop, so a
+//     slow loop moves further per call and the ramp takes the same time either
+//     way. Gaps longer than MAX_DT (the first call, or after a pause) only
+//     count as MAX_DT so a stale value can't jump straight to the target.
+public class AccelerationLimiter {
+
+    private static final double MAX_DT = 0.1; // seconds
+
+    public double rate; // units per second
+
+    private double value = 0;
+    private long lastNanos = 0;
+
+    public AccelerationLimiter(double rate) {
+        this.rate = rate;
+    }
+
+    public double calculate(double target, long nowNanos) {
+        double dt = lastNanos == 0 ? 0 : Math.min(MAX_DT, (nowNanos - lastNanos) / 1e9);
+        lastNanos = nowNanos;
+
+        double step = rate * dt;
+        value += Math.max(-step, Math.min(step, target - value));
+        return value;
+    }
+
+    public double get() {
+        return value;
+    }
+
+    // jump straight to value, e.g. 0 when the motors are stopped
+    public void reset(double value) {
+        this.value = value;
+        this.lastNanos = 0;
+    }
+}
@@ -0,0 +1,260 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.Supplier;
+
+// A step of a routine, or a group of steps, ticked from one loop
+//     Leaves wrap a Motion (a drive move, the lift, the grabber). Groups run
+//     their children in sequence, in parallel (all must finish), as a race
+//     (the first to finish cancels the rest) or against a deadline (the
+//     first child decides when the group is over). Everything is advanced by
+//     update() from a single loop, so there are no threads and no locking,
+//     but two actions that drive the same mechanism at once will fight:
+//     overlap the drive with the lift and grabber, not with itself.
+//
+//     Every action records when it started and finished. The time of the
+//     whole routine is its critical path, the sum of the leaves is what it
+//     would have taken one step at a time, see report().
+public abstract class Action implements Motion {
+
+    public final String name;
+
+    private long startNanos = 0;
+    private long endNanos = 0;
+    private boolean done = false;
+
+    protected Action(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public final boolean update() {
+        if (done) {
+            return true;
+        }
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        if (step()) {
+            done = true;
+            endNanos = System.nanoTime();
+        }
+        return done;
+    }
+
+    @Override
+    public final boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public final void cancel() {
+        if (done) {
+            return;
+        }
+        done = true;
+        if (startNanos != 0) {
+            stop();
+            endNanos = System.nanoTime();
+        }
+    }
+
+    // one loop of work, true when finished
+    protected abstract boolean step();
+
+    // cancelled after starting
+    protected void stop() {}
+
+    // how long it ran, 0 if it never started
+    public double seconds() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1e9;
+    }
+
+    // time if every leaf had run one after another
+    public double serialSeconds() {
+        return seconds();
+    }
+
+    // one line per action, indented by depth
+    public void report(StringBuilder out, int depth) {
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+        out.append(String.format("%s %.2f s", name, seconds()));
+        if (serialSeconds() > seconds() + 0.005) {
+            out.append(String.format(" (serial %.2f s)", serialSeconds()));
+        }
+        out.append('\n');
+    }
+
+    // leaves
+
+    public static Action of(String name, final Motion motion) {
+        return new Action(name) {
+            @Override
+            protected boolean step() {
+                return motion.update();
+            }
+
+            @Override
+            protected void stop() {
+                motion.cancel();
+            }
+        };
+    }
+
+    // for motions that start as soon as they're made (lift, grabber), so
+    // they start when the routine gets to them and not when it is built
+    public static Action defer(String name, final Supplier<? extends Motion> factory) {
+        return new Action(name) {
+            private Motion motion;
+
+            @Override
+            protected boolean step() {
+                if (motion == null) {
+                    motion = factory.get();
+                }
+                return motion.update();
+            }
+
+            @Override
+            protected void stop() {
+                if (motion != null) {
+                    motion.cancel();
+                }
+            }
+        };
+    }
+
+    public static Action sleep(final double seconds) {
+        return new Action(String.format("sleep %.2f", seconds)) {
+            @Override
+            protected boolean step() {
+                return seconds() >= seconds;
+            }
+        };
+    }
+
+    // finishes the first loop condition holds, to hold a step back until
+    // another mechanism has got far enough
+    public static Action until(String name, final Supplier<Boolean> condition) {
+        return new Action(name) {
+            @Override
+            protected boolean step() {
+                return condition.get();
+            }
+        };
+    }
+
+    public static Action instant(String name, final Runnable task) {
+        return new Action(name) {
+            @Override
+            protected boolean step() {
+                task.run();
+                return true;
+            }
+        };
+    }
+
+    // groups
+
+    private abstract static class Group extends Action {
+        final Action[] children;
+
+        Group(String name, Action[] children) {
+            super(name);
+            this.children = children;
+        }
+
+        @Override
+        protected void stop() {
+            for (Action child : children) {
+                child.cancel();
+            }
+        }
+
+        @Override
+        public double serialSeconds() {
+            double total = 0;
+            for (Action child : children) {
+                total += child.serialSeconds();
+            }
+            return total;
+        }
+
+        @Override
+        public void report(StringBuilder out, int depth) {
+            super.report(out, depth);
+            for (Action child : children) {
+                child.report(out, depth + 1);
+            }
+        }
+    }
+
+    public static Action sequence(Action... actions) {
+        return new Group("sequence", actions) {
+            private int index = 0;
+
+            @Override
+            protected boolean step() {
+                // carry straight on into the next one in the same loop
+                while (index < children.length && children[index].update()) {
+                    index++;
+                }
+                return index >= children.length;
+            }
+        };
+    }
+
+    public static Action parallel(Action... actions) {
+        return new Group("parallel", actions) {
+            @Override
+            protected boolean step() {
+                boolean all = true;
+                for (Action child : children) {
+                    all &= child.update();
+                }
+                return all;
+            }
+        };
+    }
+
+    public static Action race(Action... actions) {
+        return new Group("race", actions) {
+            @Override
+            protected boolean step() {
+                boolean any = false;
+                for (Action child : children) {
+                    any |= child.update();
+                }
+                if (any) {
+                    stop();
+                }
+                return any;
+            }
+        };
+    }
+
+    // the first action sets the length, the others are cut off when it ends
+    public static Action deadline(Action deadline, Action... others) {
+        Action[] all = new Action[others.length + 1];
+        all[0] = deadline;
+        System.arraycopy(others, 0, all, 1, others.length);
+        return new Group("deadline", all) {
+            @Override
+            protected boolean step() {
+                for (int i = 1; i < children.length; i++) {
+                    children[i].update();
+                }
+                if (children[0].update()) {
+                    stop();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -3,6 +3,7 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 
@@ -14,6 +15,7 @@ public class AutoWithGyroLeft extends LinearOpMode {
         ElapsedTime time = new ElapsedTime();
 
         Robot robot = new Robot(hardwareMap, time);
+        ConeStack stack = new ConeStack(robot.lift);
         robot.drive.speed = 0.35;
 
         Vision vision = new Vision(hardwareMap);
@@ -25,6 +27,10 @@ public class AutoWithGyroLeft extends LinearOpMode {
 
         int id = 3;
 
+        // grip the preload now, so the grabber is somewhere known and the
+        // close() after start has nothing left to wait for
+        robot.grabber.close();
+
         while (opModeInInit()) {
             id = vision.getIdentifier();
             telemetry.addData("Id:", id);
@@ -34,10 +40,12 @@ public class AutoWithGyroLeft extends LinearOpMode {
         if (id == -1) { id = 3; }
 
         waitForStart();
+        // the start square is the origin, the log shows where odometry thinks we ended
+        robot.drive.setPose(0, 0, 0);
 
-        robot.grabber.close();
-        robot.sleep(0.25);
-        robot.lift.setPosition(robot.lift.SMALL);
+        robot.waitFor(robot.grabber.close());
+        // raised on the way, the lift runs while the drive does
+        robot.lift.setPositionAsync(robot.lift.SMALL);
 
         robot.drive.forward().goDist((inchesPerBox * .6) - robotLength);
         robot.sleep(0.25);
@@ -48,11 +56,10 @@ public class AutoWithGyroLeft extends LinearOpMode {
         robot.drive.forward().goDist(inchesPerBox * .2);
         robot.sleep(0.25);
 
-        robot.drive.forward().interruptableGoDist(inchesPerBox * .3, robot.poleSensor);
+        robot.drive.forward().interruptableGoDist(inchesPerBox * .3, robot.poleSampler);
         robot.sleep(0.25);
 
-        robot.grabber.open();
-        robot.sleep(0.25);
+        robot.waitFor(robot.grabber.open());
 
         robot.drive.backward().goDist(inchesPerBox * .25);
         robot.sleep(0.25);
@@ -65,7 +72,8 @@ public class AutoWithGyroLeft extends LinearOpMode {
         //robot.drive.backward().goFor(1);
         //robot.sleep(0.25);
 
-        robot.lift.setPositionAsync(robot.lift.FIVE_STACK);
+        // on its way to the top cone while we drive to the stack
+        stack.prePosition(robot.lift);
         robot.drive.forward().variableGoDist(inchesPerBox * 1.9, .35);
         robot.sleep(0.25);
 
@@ -84,14 +92,13 @@ public class AutoWithGyroLeft extends LinearOpMode {
         // skeptical may not be needed
         robot.sleep(0.25);
 
-        robot.grabber.close();
+        robot.waitFor(robot.grabber.close());
         telemetry.addData("mode", "closed");
         telemetry.update();
 
-        robot.sleep(0.25);
-
-        robot.lift.setPosition(robot.lift.SMALL);
-        robot.sleep(0.2);
+        // only as high as needed to clear the stack, the rest happens while driving
+        robot.lift.setPosition(stack.liftOffHeight());
+        stack.coneTaken();
         robot.lift.setPositionAsync(robot.lift.LARGE);
 
         robot.drive.backward().goDist(inchesPerBox * 1);
@@ -103,22 +110,12 @@ public class AutoWithGyroLeft extends LinearOpMode {
         robot.drive.right().goDist((inchesPerBox * .95 - robot.robotDistFront) * directionCoefficient);
         robot.sleep(0.25);
 
-        robot.drive.forward().interruptableGoDist(inchesPerBox * .3, robot.poleSensor);
-        robot.sleep(0.25);
-
-        robot.lift.setPosition(robot.lift.getPosition() - 220);
-        robot.sleep(.25);
-
-        robot.grabber.open();
-        robot.sleep(0.25);
-
-        robot.drive.backward().goDist(inchesPerBox * .25);
-        robot.sleep(0.25);
-
-        robot.lift.setPositionAsync(0);
-        robot.sleep(0.1);
+        // holds the approach until the lift is clear of the pole, then drops
+        // the cone and backs off, the time saved is in the log
+        robot.deliver(robot.lift.LARGE);
 
         robot.drive.left().goDist(inchesPerBox * (2 + (directionCoefficient/2.0) -(Math.abs(id))));
+        RobotLog.ii("Auto", "parked, pose %s", robot.drive.getPose());
         // this is for left only
 
 
@@ -0,0 +1,120 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+// Measured drivetrain and field constants, written by the Drive Calibration OpMode
+//     Loaded once when the drive is built. A missing file, a file from a
+//     different VERSION or one that doesn't parse falls back to DEFAULTS (the
+//     hand tuned numbers we used before), so a fresh hub still drives.
+//
+//     The rotate arrays are ticks per 90 degrees for each wheel, indexed like
+//     DriveStateSnapshot. The wheels slip by different amounts, which is why
+//     one ticksPerDegree was never enough for the encoder turns.
+public final class Calibration {
+
+    public static final int VERSION = 1;
+    public static final String FILE_NAME = "calibration.properties";
+
+    public static final Calibration DEFAULTS = new Calibration(40.88721, 700 / 90.0,
+            new double[] {754, 605, 605, 724},
+            new double[] {698, 629, 611, 732},
+            21.5); // 23.3 for meet; 21.5 for school
+
+    public final double ticksPerInch;
+    public final double ticksPerDegree;
+    private final double[] rotateRight;
+    private final double[] rotateLeft;
+    public final double inchesPerBox;
+
+    public Calibration(double ticksPerInch, double ticksPerDegree, double[] rotateRight, double[] rotateLeft, double inchesPerBox) {
+        this.ticksPerInch = ticksPerInch;
+        this.ticksPerDegree = ticksPerDegree;
+        this.rotateRight = rotateRight.clone();
+        this.rotateLeft = rotateLeft.clone();
+        this.inchesPerBox = inchesPerBox;
+    }
+
+    // wheel ticks to turn that wheel for a 90 degree encoder turn
+    public double rotateRight(int wheel) {
+        return rotateRight[wheel];
+    }
+
+    public double rotateLeft(int wheel) {
+        return rotateLeft[wheel];
+    }
+
+    public static File defaultFile() {
+        return new File(AppUtil.FIRST_FOLDER, FILE_NAME);
+    }
+
+    public static Calibration load() {
+        return load(defaultFile());
+    }
+
+    public static Calibration load(File file) {
+        if (!file.exists()) {
+            RobotLog.ii("Calibration", "no %s, using defaults", file.getName());
+            return DEFAULTS;
+        }
+
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            int version = Integer.parseInt(properties.getProperty("version"));
+            if (version != VERSION) {
+                RobotLog.ww("Calibration", "%s is version %d, expected %d, using defaults", file.getName(), version, VERSION);
+                return DEFAULTS;
+            }
+
+            double[] right = new double[4];
+            double[] left = new double[4];
+            for (int wheel = 0; wheel < 4; wheel++) {
+                right[wheel] = number(properties, "rotateRight." + wheel);
+                left[wheel] = number(properties, "rotateLeft." + wheel);
+            }
+            Calibration calibration = new Calibration(number(properties, "ticksPerInch"),
+                    number(properties, "ticksPerDegree"), right, left, number(properties, "inchesPerBox"));
+            RobotLog.ii("Calibration", "loaded %s", calibration);
+            return calibration;
+        } catch (IOException | RuntimeException e) {
+            RobotLog.ww("Calibration", "could not load %s: %s, using defaults", file.getName(), e.toString());
+            return DEFAULTS;
+        }
+    }
+
+    private static double number(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return Double.parseDouble(value);
+    }
+
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(VERSION));
+        properties.setProperty("ticksPerInch", Double.toString(ticksPerInch));
+        properties.setProperty("ticksPerDegree", Double.toString(ticksPerDegree));
+        for (int wheel = 0; wheel < 4; wheel++) {
+            properties.setProperty("rotateRight." + wheel, Double.toString(rotateRight[wheel]));
+            properties.setProperty("rotateLeft." + wheel, Double.toString(rotateLeft[wheel]));
+        }
+        properties.setProperty("inchesPerBox", Double.toString(inchesPerBox));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "drive calibration");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3f ticks/in, %.3f ticks/deg, %.2f in/box", ticksPerInch, ticksPerDegree, inchesPerBox);
+    }
+}
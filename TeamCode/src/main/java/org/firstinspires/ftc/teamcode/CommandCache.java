@@ -0,0 +1,181 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.util.ArrayList;
+
+// Remembers the last value sent to each actuator and drops writes that would
+//     not change anything. Every write that reaches the hub is a separate
+//     transaction, so a loop that sets the same powers every spin is paying
+//     for nothing. The counters show how much traffic is being saved.
+//
+//     In deferred mode set() only records the value and flush() sends
+//     everything that changed in one go, so a loop can set the same channel
+//     several times and only the last value goes out (see RobotCycle).
+public class CommandCache {
+
+    // smallest change in power / servo position worth sending
+    public double epsilon;
+
+    private long sent = 0;
+    private long skipped = 0;
+
+    private boolean deferred = false;
+    // channels with a value waiting for flush(), in the order they were set
+    private final ArrayList<Channel> dirty = new ArrayList<>();
+
+    public CommandCache(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    // time per write that actually went out
+    public final LoopHistogram writeTime = new LoopHistogram("hardware writes");
+
+    public CommandCache() {
+        this(0.005);
+    }
+
+    public abstract class Channel {
+        private final boolean exact;
+        private double last = Double.NaN;
+        private double pending = Double.NaN;
+        private boolean listed = false; // in dirty, until the next flush()
+
+        Channel(boolean exact) {
+            this.exact = exact;
+        }
+
+        // returns true if the value was written, or queued / withdrawn when deferred
+        public boolean set(double value) {
+            double previous = get();
+            if (!Double.isNaN(previous)) {
+                double change = Math.abs(value - previous);
+                // a stop command is always sent, even if it is a tiny change
+                boolean unchanged = exact || (value == 0 && previous != 0)
+                        ? change == 0
+                        : change <= epsilon;
+                if (unchanged) {
+                    skipped++;
+                    return false;
+                }
+            }
+
+            if (deferred) {
+                if (!Double.isNaN(pending)) {
+                    skipped++; // replaced before it went out
+                }
+                if (value == last) {
+                    // back to what the device already has, nothing to send
+                    pending = Double.NaN;
+                    return true;
+                }
+                if (!listed) {
+                    listed = true;
+                    dirty.add(this);
+                }
+                pending = value;
+                return true;
+            }
+
+            send(value);
+            return true;
+        }
+
+        private void send(double value) {
+            long start = System.nanoTime();
+            write(value);
+            writeTime.record(System.nanoTime() - start);
+            last = value;
+            sent++;
+        }
+
+        // called by flush(), nothing is pending if set() went back to the sent value
+        private void sendPending() {
+            listed = false;
+            if (!Double.isNaN(pending)) {
+                double value = pending;
+                pending = Double.NaN;
+                send(value);
+            }
+        }
+
+        // last value set, including one still waiting for flush(), NaN if
+        // nothing has been set yet
+        public double get() {
+            return Double.isNaN(pending) ? last : pending;
+        }
+
+        // forget the last value so the next set() always goes out, use this
+        // when something else may have changed the device behind our back
+        public void invalidate() {
+            last = Double.NaN;
+        }
+
+        protected abstract void write(double value);
+    }
+
+    public Channel power(final DcMotor motor) {
+        return new Channel(false) {
+            @Override
+            protected void write(double value) {
+                motor.setPower(value);
+            }
+        };
+    }
+
+    public Channel target(final DcMotor motor) {
+        return new Channel(true) {
+            @Override
+            protected void write(double value) {
+                motor.setTargetPosition((int) value);
+            }
+        };
+    }
+
+    public Channel position(final Servo servo) {
+        return new Channel(false) {
+            @Override
+            protected void write(double value) {
+                servo.setPosition(value);
+            }
+        };
+    }
+
+    // Queue writes until flush() instead of sending them straight away.
+    // Turning it off flushes, so nothing queued is left behind.
+    public CommandCache setDeferred(boolean deferred) {
+        if (!deferred) {
+            flush();
+        }
+        this.deferred = deferred;
+        return this;
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    // send every queued value that changed, returns how many went out
+    public int flush() {
+        long before = sent;
+        for (int i = 0; i < dirty.size(); i++) {
+            dirty.get(i).sendPending();
+        }
+        dirty.clear();
+        return (int) (sent - before);
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void resetCounters() {
+        sent = 0;
+        skipped = 0;
+    }
+}
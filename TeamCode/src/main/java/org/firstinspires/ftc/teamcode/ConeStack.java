@@ -0,0 +1,65 @@
+package org.firstinspires.ftc.teamcode;
+
+// The stack of cones by the wall, and the lift heights that go with it
+//     Keeps count of the cones left, so each Auto cycle asks for "the next
+//     cone" instead of picking a FIVE_STACK..ONE_STACK constant by hand.
+//     Heights are linear in the number of cones, base is the height for the
+//     last cone on the tile.
+//
+//     If the stack isn't where the model says (cones squashed, a different
+//     field), set offsetTicks by hand to shift every height. Nothing measures
+//     the stack, the pole sensor is on the chassis and can't see its top.
+public class ConeStack {
+
+    public static final int FULL = 5;
+
+    public final int baseTicks;     // pickup height with one cone left
+    public final int ticksPerCone;
+    public int clearanceTicks = 250;  // above the pickup height to clear the rest of the stack
+
+    public int offsetTicks = 0;       // manual correction added to every height
+
+    private int cones;
+
+    public ConeStack(int baseTicks, int ticksPerCone, int cones) {
+        this.baseTicks = baseTicks;
+        this.ticksPerCone = ticksPerCone;
+        this.cones = cones;
+    }
+
+    // a full stack using the lift's old per cone presets
+    public ConeStack(Lift lift) {
+        this(lift.ONE_STACK, lift.TWO_STACK - lift.ONE_STACK, FULL);
+    }
+
+    public int getCones() {
+        return cones;
+    }
+
+    public boolean isEmpty() {
+        return cones == 0;
+    }
+
+    // lift height to grab the top cone
+    public int pickupHeight() {
+        return baseTicks + Math.max(0, cones - 1) * ticksPerCone + offsetTicks;
+    }
+
+    // just high enough to pull the top cone clear of the ones under it
+    public int liftOffHeight() {
+        return pickupHeight() + clearanceTicks;
+    }
+
+    // start the lift toward the next pickup height, call this as the drive
+    // sets off for the stack so the lift is there when the robot is
+    public Motion prePosition(Lift lift) {
+        return lift.moveTo(pickupHeight());
+    }
+
+    public ConeStack coneTaken() {
+        if (cones > 0) {
+            cones--;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,25 @@
+package org.firstinspires.ftc.teamcode;
+
+// One filtered distance reading and the time it was true
+//     Immutable, so DistanceSampler can hand it to the OpMode thread without
+//     locking and the value and its timestamp always belong together.
+public final class DistanceSample {
+    public final double cm;
+
+    // System.nanoTime() of the middle of the filter window
+    public final long timestamp;
+
+    public DistanceSample(double cm, long timestamp) {
+        this.cm = cm;
+        this.timestamp = timestamp;
+    }
+
+    public double ageSeconds() {
+        return (System.nanoTime() - timestamp) / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f cm", cm);
+    }
+}
@@ -0,0 +1,188 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.rev.Rev2mDistanceSensor;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Reads a distance sensor on its own thread and filters the readings
+//     A Rev 2m read is a slow I2C transaction, doing it here keeps it out of
+//     the drive loop. Readings go into a small ring buffer of primitives and
+//     the published value is the median of the last WINDOW good ones.
+//     Out of range readings are dropped, and so is anything further than
+//     outlierCm from the current median (a reflection, or the beam glancing
+//     off the pole's edge). Something really new in front of the sensor takes
+//     over once it has been seen dropOutliers readings in a row when it is
+//     closer (a pole appearing, one period or 33 ms late at 30 Hz), or a
+//     whole window of them when it is further away.
+//
+//     The filtered value is stamped with the time of the middle of the window,
+//     which is roughly when the median was really true. getPredicted() uses
+//     that age and the closing speed to estimate the distance right now.
+//     Out of range readings never replace it, so a value older than maxAge
+//     is treated as nothing seen rather than extrapolated from.
+public class DistanceSampler {
+
+    private static final String TAG = "DistanceSampler";
+    private static final int WINDOW = 5;
+
+    public double maxRangeCm = 200;   // the 2m sensor reports 819 / 8190 for nothing seen
+    public double outlierCm = 15;
+    public int dropOutliers = 2;      // closer readings in a row before they replace the window
+    // seconds, a few sample periods. On top of this a pole that suddenly
+    // appears is dropOutliers - 1 periods late, the stop distance must allow for it.
+    public double maxAge;
+
+    private final Rev2mDistanceSensor sensor;
+    private final long periodNanos;
+
+    // ring buffer, only touched by the sampling thread
+    private final double[] values = new double[WINDOW];
+    private final long[] times = new long[WINDOW];
+    private final double[] sorted = new double[WINDOW];
+    private int next = 0;
+    private int count = 0;
+    private int rejected = 0;
+    private int outliersInRow = 0;
+    private int dropsInRow = 0;
+    private double median = Double.NaN;
+
+    // published by the sampling thread, null until the first good reading
+    private final AtomicReference<DistanceSample> latest = new AtomicReference<>();
+
+    // recorded on the sampling thread and logged from it when it stops, don't read it elsewhere
+    public final LoopHistogram readTime = new LoopHistogram("distance read");
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public DistanceSampler(Rev2mDistanceSensor sensor, double rateHz) {
+        this.sensor = sensor;
+        this.periodNanos = (long) (1e9 / rateHz);
+        // the window's middle is already WINDOW / 2 periods old when published
+        this.maxAge = (WINDOW / 2 + 4) / rateHz;
+    }
+
+    // about as fast as the sensor produces new measurements
+    public DistanceSampler(Rev2mDistanceSensor sensor) {
+        this(sensor, 30);
+    }
+
+    public DistanceSampler start() {
+        if (running) {
+            return this;
+        }
+        running = true;
+
+        final Thread owner = Thread.currentThread();
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long wake = System.nanoTime();
+                while (running && owner.isAlive() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        long start = System.nanoTime();
+                        double cm = sensor.getDistance(DistanceUnit.CM);
+                        long now = System.nanoTime();
+                        readTime.record(now - start);
+                        add(cm, now);
+                    } catch (RuntimeException e) {
+                        RobotLog.ww(TAG, "read failed: %s", e.toString());
+                    }
+
+                    wake += periodNanos;
+                    long now = System.nanoTime();
+                    if (wake < now) {
+                        wake = now;
+                    } else {
+                        LockSupport.parkNanos(wake - now);
+                    }
+                }
+                running = false;
+                // logged from here, readTime is only safe to read on this thread
+                readTime.log();
+            }
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    void add(double cm, long nanos) {
+        if (!(cm > 0 && cm < maxRangeCm)) {
+            rejected++;
+            return;
+        }
+        if (count > WINDOW / 2 && Math.abs(cm - median) > outlierCm) {
+            rejected++;
+            // something really new in front of the sensor shows up in every
+            // reading, so after enough of them in a row start over
+            dropsInRow = cm < median ? dropsInRow + 1 : 0;
+            if (++outliersInRow < WINDOW && dropsInRow < dropOutliers) {
+                return;
+            }
+            count = 0;
+        }
+        outliersInRow = 0;
+        dropsInRow = 0;
+
+        values[next] = cm;
+        times[next] = nanos;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+
+        for (int i = 0; i < count; i++) {
+            sorted[i] = values[(next - count + i + WINDOW) % WINDOW];
+        }
+        long middle = times[(next - count + count / 2 + WINDOW) % WINDOW];
+        Arrays.sort(sorted, 0, count);
+
+        median = sorted[count / 2];
+        latest.set(new DistanceSample(median, middle));
+    }
+
+    // the last filtered reading, null until there is one
+    public DistanceSample get() {
+        return latest.get();
+    }
+
+    // median of the recent readings in cm, NaN until there is one
+    public double getFiltered() {
+        DistanceSample sample = latest.get();
+        return sample == null ? Double.NaN : sample.cm;
+    }
+
+    public double getAgeMs() {
+        DistanceSample sample = latest.get();
+        return sample == null ? Double.POSITIVE_INFINITY : sample.ageSeconds() * 1000;
+    }
+
+    // Where the target should be now if we are closing on it at closingSpeed
+    // cm/s. NaN when there is no reading younger than maxAge, don't stop on it.
+    public double getPredicted(double closingSpeed) {
+        DistanceSample sample = latest.get();
+        if (sample == null) {
+            return Double.NaN;
+        }
+        double age = sample.ageSeconds();
+        if (age > maxAge) {
+            return Double.NaN;
+        }
+        return sample.cm - closingSpeed * age;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,142 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.ElapsedTime;
+
+import java.io.IOException;
+
+// Measures the drive constants with the pole sensor and the IMU
+//     Run it on every new field, tile size is the thing that changes between
+//     school and a meet. Steps, with A to continue each time:
+//         1. front of the robot on the tile seam 1 tile from the wall, facing it
+//         2. back it up to the seam 2 tiles from the wall
+//            (the sensor reads one tile further, that gives inchesPerBox)
+//         3. the robot drives 12 inches at the wall by encoder, the sensor
+//            says how far it really went, that gives ticksPerInch
+//         4. the robot turns 90 right and 90 left on the encoders, the IMU
+//            says how far it really turned, that scales each wheel's ticks
+//     The result is written to FIRST/calibration.properties and is used from
+//     the next OpMode on.
+@TeleOp(name = "Drive Calibration", group = "Tests")
+public class DriveCalibration extends LinearOpMode {
+
+    final double TEST_INCHES = 12;
+    final int TEST_DEGREES = 90;
+
+    private Robot robot;
+
+    @Override
+    public void runOpMode() {
+        robot = new Robot(hardwareMap, new ElapsedTime());
+        Calibration old = robot.drive.calibration;
+
+        prompt("Front on the seam 1 tile from the wall, facing the wall. Press play, then A");
+        waitForStart();
+        waitForA();
+        double oneTile = measureCm();
+
+        prompt("Back up to the seam 2 tiles from the wall, press A");
+        waitForA();
+        double twoTiles = measureCm();
+        double inchesPerBox = (twoTiles - oneTile) / 2.54;
+
+        prompt("Driving 12 inches at the wall, press A");
+        waitForA();
+        int ticks = (int) (TEST_INCHES * old.ticksPerInch);
+        double before = measureCm();
+        robot.drive.runToPosition(ticks, ticks, ticks, ticks);
+        double after = measureCm();
+        double ticksPerInch = ticks / ((before - after) / 2.54);
+
+        prompt("Turning 90 right and then 90 left, needs room to spin, press A");
+        waitForA();
+        double[] right = new double[4];
+        double[] left = new double[4];
+        double turnedRight = measureTurn(true);
+        double turnedLeft = measureTurn(false);
+        for (int wheel = 0; wheel < 4; wheel++) {
+            right[wheel] = old.rotateRight(wheel) * TEST_DEGREES / turnedRight;
+            left[wheel] = old.rotateLeft(wheel) * TEST_DEGREES / turnedLeft;
+        }
+        // average wheel ticks per degree over both turns, for the kinematics
+        double ticksPerDegree = 0;
+        for (int wheel = 0; wheel < 4; wheel++) {
+            ticksPerDegree += (right[wheel] + left[wheel]) / 2 / 90.0 / 4;
+        }
+
+        Calibration calibration = new Calibration(ticksPerInch, ticksPerDegree, right, left, inchesPerBox);
+        telemetry.addData("Tile", "%.1f -> %.1f cm, %.2f in/box (was %.2f)", oneTile, twoTiles, inchesPerBox, old.inchesPerBox);
+        telemetry.addData("Distance", "%.1f cm for %d ticks, %.3f ticks/in (was %.3f)", before - after, ticks, ticksPerInch, old.ticksPerInch);
+        telemetry.addData("Turns", "right %.1f deg, left %.1f deg, %.3f ticks/deg (was %.3f)", turnedRight, turnedLeft, ticksPerDegree, old.ticksPerDegree);
+
+        if (!isSane(calibration, old)) {
+            telemetry.addData("Not saved", "a value is more than 25% off the old one, check the setup and rerun");
+        } else {
+            try {
+                calibration.save(Calibration.defaultFile());
+                telemetry.addData("Saved", Calibration.defaultFile().getPath());
+            } catch (IOException e) {
+                telemetry.addData("Not saved", e.toString());
+            }
+        }
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private void prompt(String message) {
+        telemetry.addData(">", message);
+        telemetry.addData("Pole", "%.1f cm", robot.poleSampler.getFiltered());
+        telemetry.update();
+    }
+
+    private void waitForA() {
+        while (opModeIsActive() && !gamepad1.a) {
+            robot.sleep(0.02);
+        }
+        while (opModeIsActive() && gamepad1.a) {
+            robot.sleep(0.02);
+        }
+    }
+
+    // let the filter fill with fresh readings, then average the filtered value
+    private double measureCm() {
+        robot.sleep(0.4);
+        double sum = 0;
+        int count = 20;
+        for (int i = 0; i < count; i++) {
+            sum += robot.poleSampler.getFiltered();
+            robot.sleep(0.025);
+        }
+        return sum / count;
+    }
+
+    // degrees actually turned for a TEST_DEGREES encoder turn
+    private double measureTurn(boolean right) {
+        robot.sleep(0.3);
+        robot.drive.readState();
+        double start = robot.drive.heading;
+        if (right) {
+            robot.drive.rotateRightEncoder(TEST_DEGREES);
+        } else {
+            robot.drive.rotateLeftEncoder(TEST_DEGREES);
+        }
+        robot.sleep(0.3);
+        robot.drive.readState();
+        return Math.abs(robot.drive.heading - start);
+    }
+
+    // a bad setup (sensor missing the wall, robot bumped) gives wild numbers
+    private boolean isSane(Calibration calibration, Calibration old) {
+        return near(calibration.ticksPerInch, old.ticksPerInch)
+                && near(calibration.ticksPerDegree, old.ticksPerDegree)
+                && near(calibration.inchesPerBox, old.inchesPerBox);
+    }
+
+    private boolean near(double value, double reference) {
+        return Math.abs(value / reference - 1) < 0.25;
+    }
+}
@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Records what the drivetrain does for a given voltage, for DriveFeedforwardFitter
+//     Two runs back to back: a slow voltage ramp (speed depends on kS and kV
+//     only) and then a voltage step (the jump in speed gives kA). Every loop
+//     logs the time, the volts asked for, the battery and all four wheel
+//     velocities into FIRST/characterization as a small binary file.
+//
+//     Spins in place by default so it fits anywhere. Press X during init to
+//     drive forward instead, that needs about 8 feet of clear field. B stops.
+@TeleOp(name = "Drive Characterization", group = "Tests")
+public class DriveCharacterization extends LinearOpMode {
+
+    final double RAMP_RATE = 0.5;   // volts per second
+    final double RAMP_VOLTS = 4.0;  // where the ramp stops
+    final double STEP_VOLTS = 4.0;
+    final double STEP_TIME = 1.5;   // seconds
+    final double REST_TIME = 1.0;   // between the ramp and the step
+
+    @Override
+    public void runOpMode() {
+        Robot robot = new Robot(hardwareMap, new ElapsedTime());
+        MecanumDrive drive = robot.drive;
+
+        boolean spin = true;
+        boolean lastX = false;
+        while (!isStarted() && !isStopRequested()) {
+            if (gamepad1.x && !lastX) {
+                spin = !spin;
+            }
+            lastX = gamepad1.x;
+            telemetry.addData("Mode", spin ? "spin in place" : "drive forward (needs room!)");
+            telemetry.addData(">", "X to change mode, play to start, B to stop early");
+            telemetry.update();
+        }
+        if (isStopRequested()) {
+            return;
+        }
+
+        // which way each wheel turns for positive volts, indexed like the snapshot
+        int[] signs = spin ? new int[] {1, -1, 1, -1} : new int[] {1, 1, 1, 1};
+
+        File directory = new File(AppUtil.FIRST_FOLDER, "characterization");
+        File file = new File(directory, (spin ? "spin-" : "forward-") + System.currentTimeMillis() + ".bin");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            telemetry.addData("Error", "could not create %s", directory.getPath());
+            telemetry.update();
+            return;
+        }
+
+        int samples = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(DriveFeedforwardFitter.LOG_MAGIC);
+            out.writeInt(DriveFeedforwardFitter.LOG_VERSION);
+            for (int sign : signs) {
+                out.writeByte(sign);
+            }
+
+            long start = System.nanoTime();
+            double rampEnd = RAMP_VOLTS / RAMP_RATE;
+            double stepStart = rampEnd + REST_TIME;
+            double stepEnd = stepStart + STEP_TIME;
+
+            while (opModeIsActive() && !gamepad1.b) {
+                DriveStateSnapshot state = drive.readState();
+                double t = (state.timestamp - start) / 1e9;
+                if (t > stepEnd) {
+                    break;
+                }
+
+                double volts;
+                if (t < rampEnd) {
+                    volts = RAMP_RATE * t;
+                } else if (t < stepStart) {
+                    volts = 0;
+                } else {
+                    volts = STEP_VOLTS;
+                }
+
+                double power = Math.min(1, volts / state.batteryVoltage);
+                drive.setWheelPowers(signs[0] * power, signs[1] * power, signs[2] * power, signs[3] * power);
+
+                // the volts actually applied, in case the battery clipped the request
+                out.writeLong(state.timestamp - start);
+                out.writeFloat((float) (power * state.batteryVoltage));
+                out.writeFloat((float) state.batteryVoltage);
+                for (int wheel = 0; wheel < 4; wheel++) {
+                    out.writeFloat((float) state.velocity[wheel]);
+                }
+                samples++;
+
+                if ((samples & 15) == 0) {
+                    telemetry.addData("Time", "%.1f s", t);
+                    telemetry.addData("Volts", "%.2f", volts);
+                    telemetry.addData("Samples", samples);
+                    telemetry.update();
+                }
+            }
+        } catch (IOException e) {
+            RobotLog.ee("DriveCharacterization", "could not write %s: %s", file.getName(), e.toString());
+        } finally {
+            drive.off();
+        }
+
+        telemetry.addData("Saved", "%d samples to %s", samples, file.getPath());
+        telemetry.addData(">", "Fit with DriveFeedforwardFitter on a laptop");
+        telemetry.update();
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+// Fits V = kS * sign(v) + kV * v + kA * a to DriveCharacterization logs
+//     Plain Java with no robot dependencies, run it on a laptop:
+//
+//         adb pull /sdcard/FIRST/characterization
+//         java TeamCode/src/main/java/org/firstinspires/ftc/teamcode/DriveFeedforwardFitter.java characterization/*.bin
+//         adb push drive_feedforward.properties /sdcard/FIRST/
+//
+//     Velocity is the average over the four wheels in ticks/s, acceleration is
+//     a central difference over a few samples either side to keep encoder
+//     noise out of kA. MecanumDrive picks up the file the next time it starts.
+public class DriveFeedforwardFitter {
+
+    public static final String FILE_NAME = "drive_feedforward.properties";
+
+    // log header, kept here rather than in the OpMode so this file builds on its own
+    static final int LOG_MAGIC = 0x44524643; // "DRFC"
+    static final int LOG_VERSION = 1;
+
+    // samples slower than this are the wheels still breaking free, leave them out
+    static final double MIN_VELOCITY = 20; // ticks/s
+    static final int DERIVATIVE_SPAN = 3;  // samples each side
+
+    // normal equations for the three coefficients
+    private final double[][] ata = new double[3][3];
+    private final double[] atb = new double[3];
+    private double sumV = 0;
+    private double sumV2 = 0;
+    private int rows = 0;
+
+    public double kS, kV, kA;
+    public double rSquared;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: DriveFeedforwardFitter [-o output.properties] log.bin...");
+            System.exit(1);
+        }
+
+        DriveFeedforwardFitter fitter = new DriveFeedforwardFitter();
+        File output = new File(FILE_NAME);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = new File(args[++i]);
+            } else {
+                int used = fitter.add(new File(args[i]));
+                System.out.printf("%s: %d samples used%n", args[i], used);
+            }
+        }
+
+        if (!fitter.fit()) {
+            System.err.println("not enough moving samples to fit, is the log empty?");
+            System.exit(1);
+        }
+        System.out.printf("kS = %.4f V%nkV = %.6f V/(tick/s)%nkA = %.6f V/(tick/s^2)%nr^2 = %.4f over %d samples%n",
+                fitter.kS, fitter.kV, fitter.kA, fitter.rSquared, fitter.rows);
+
+        fitter.write(output);
+        System.out.println("wrote " + output.getPath());
+    }
+
+    // reads one log and adds its samples to the fit, returns how many were used
+    public int add(File file) throws IOException {
+        long[] time = new long[1024];
+        double[] volts = new double[1024];
+        double[] velocity = new double[1024];
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != LOG_VERSION) {
+                throw new IOException(file.getName() + " is not a drive characterization log");
+            }
+            int[] signs = new int[4];
+            for (int wheel = 0; wheel < 4; wheel++) {
+                signs[wheel] = in.readByte();
+            }
+
+            while (true) {
+                long t;
+                try {
+                    t = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                double applied = in.readFloat();
+                in.readFloat(); // battery, kept in the log for looking at by hand
+
+                double sum = 0;
+                for (int wheel = 0; wheel < 4; wheel++) {
+                    sum += signs[wheel] * in.readFloat();
+                }
+
+                if (count == time.length) {
+                    time = Arrays.copyOf(time, count * 2);
+                    volts = Arrays.copyOf(volts, count * 2);
+                    velocity = Arrays.copyOf(velocity, count * 2);
+                }
+                time[count] = t;
+                volts[count] = applied;
+                velocity[count] = sum / 4;
+                count++;
+            }
+        }
+
+        int used = 0;
+        for (int i = DERIVATIVE_SPAN; i < count - DERIVATIVE_SPAN; i++) {
+            double v = velocity[i];
+            // with no volts the motors are floating and coasting, not following the model
+            if (Math.abs(v) < MIN_VELOCITY || volts[i] == 0) {
+                continue;
+            }
+            double dt = (time[i + DERIVATIVE_SPAN] - time[i - DERIVATIVE_SPAN]) / 1e9;
+            if (dt <= 0) {
+                continue;
+            }
+            double a = (velocity[i + DERIVATIVE_SPAN] - velocity[i - DERIVATIVE_SPAN]) / dt;
+            addRow(Math.signum(v), v, a, volts[i]);
+            used++;
+        }
+        return used;
+    }
+
+    private void addRow(double s, double v, double a, double volts) {
+        double[] row = {s, v, a};
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                ata[i][j] += row[i] * row[j];
+            }
+            atb[i] += row[i] * volts;
+        }
+        sumV += volts;
+        sumV2 += volts * volts;
+        rows++;
+    }
+
+    // solves the normal equations, false if there isn't enough data
+    public boolean fit() {
+        if (rows < 3) {
+            return false;
+        }
+
+        // Gaussian elimination with partial pivoting on copies, it's only 3x3
+        double[][] m = new double[3][4];
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(ata[i], 0, m[i], 0, 3);
+            m[i][3] = atb[i];
+        }
+        for (int col = 0; col < 3; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < 3; r++) {
+                if (Math.abs(m[r][col]) > Math.abs(m[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(m[pivot][col]) < 1e-12) {
+                return false;
+            }
+            double[] swap = m[col];
+            m[col] = m[pivot];
+            m[pivot] = swap;
+
+            for (int r = 0; r < 3; r++) {
+                if (r != col) {
+                    double factor = m[r][col] / m[col][col];
+                    for (int c = col; c < 4; c++) {
+                        m[r][c] -= factor * m[col][c];
+                    }
+                }
+            }
+        }
+        kS = m[0][3] / m[0][0];
+        kV = m[1][3] / m[1][1];
+        kA = m[2][3] / m[2][2];
+
+        // r^2 from the sums, residual = b.b - 2 x.(A^T b) + x.(A^T A) x
+        double[] x = {kS, kV, kA};
+        double residual = sumV2;
+        for (int i = 0; i < 3; i++) {
+            residual -= 2 * x[i] * atb[i];
+            for (int j = 0; j < 3; j++) {
+                residual += x[i] * ata[i][j] * x[j];
+            }
+        }
+        double total = sumV2 - sumV * sumV / rows;
+        rSquared = total > 0 ? 1 - residual / total : 0;
+        return true;
+    }
+
+    public void write(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("kS", Double.toString(kS));
+        properties.setProperty("kV", Double.toString(kV));
+        properties.setProperty("kA", Double.toString(kA));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            properties.store(out, String.format("drive feedforward, r^2 %.4f over %d samples", rSquared, rows));
+        }
+    }
+}
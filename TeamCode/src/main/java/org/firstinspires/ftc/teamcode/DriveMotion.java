@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode;
+
+// A drive move that is advanced one loop at a time instead of blocking
+//     Call update() once per OpMode loop until isDone() (update() returns the
+//     same thing). Nothing is sent to the motors until the first update(), so
+//     a motion can be built ahead of time and started later.
+public abstract class DriveMotion implements Motion {
+    private boolean started = false;
+    private boolean done = false;
+
+    // advance the motion by one loop, returns true once it has finished
+    @Override
+    public final boolean update() {
+        if (done) {
+            return true;
+        }
+        if (!started) {
+            started = true;
+            start();
+        }
+        if (step()) {
+            done = true;
+            end(false);
+        }
+        return done;
+    }
+
+    @Override
+    public final boolean isDone() {
+        return done;
+    }
+
+    // stop the motion where it is, safe to call more than once
+    @Override
+    public final void cancel() {
+        if (done) {
+            return;
+        }
+        done = true;
+        if (started) {
+            end(true);
+        }
+    }
+
+    // called by the first update()
+    protected void start() {}
+
+    // one loop of work, return true when the motion is complete
+    protected abstract boolean step();
+
+    // called exactly once when the motion completes or is cancelled after starting
+    protected void end(boolean cancelled) {}
+}
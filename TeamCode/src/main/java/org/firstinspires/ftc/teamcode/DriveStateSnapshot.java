@@ -0,0 +1,115 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import java.util.List;
+
+// A copy of the drive motor state taken from one bulk read
+//     All hubs are switched to MANUAL bulk caching (see ConceptMotorBulkRead),
+//     so update() costs a single bulk transaction per hub and every encoder or
+//     velocity read after it is served from the cache until the next update().
+//     MANUAL mode is hub wide, so the lift encoder comes from the same bulk
+//     read and is only current right after update(). Any loop that polls a
+//     motor on these hubs must call update() or clear the cache each time
+//     round, or it reads the same value forever (see Lift.setPosition).
+public class DriveStateSnapshot {
+
+    public static final int LEFT_FRONT = 0;
+    public static final int RIGHT_FRONT = 1;
+    public static final int LEFT_BACK = 2;
+    public static final int RIGHT_BACK = 3;
+
+    private final List<LynxModule> hubs;
+    private final DcMotorEx[] motors;
+    private final VoltageSensor battery;
+
+    // indexed by the wheel constants above
+    public final int[] position = new int[4];
+    public final double[] velocity = new double[4]; // ticks per second
+    public final int[] target = new int[4];
+
+    // how long each bulk read takes
+    public final LoopHistogram readTime = new LoopHistogram("bulk read");
+
+    // System.nanoTime() of the last update
+    public long timestamp;
+
+    // The battery is not in the bulk packet either and it changes slowly, so
+    // it is only read every BATTERY_PERIOD instead of every update
+    public double batteryVoltage = 12.0;
+    private static final long BATTERY_PERIOD = 100000000L; // 100ms
+    private long batteryTimestamp = 0;
+
+    public DriveStateSnapshot(HardwareMap hardwareMap, DcMotorEx leftFront, DcMotorEx rightFront, DcMotorEx leftBack, DcMotorEx rightBack) {
+        this.motors = new DcMotorEx[] {leftFront, rightFront, leftBack, rightBack};
+
+        VoltageSensor sensor = null;
+        for (VoltageSensor voltageSensor : hardwareMap.voltageSensor) {
+            sensor = voltageSensor;
+            break;
+        }
+        this.battery = sensor;
+
+        this.hubs = hardwareMap.getAll(LynxModule.class);
+        for (int i = 0; i < hubs.size(); i++) {
+            hubs.get(i).setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+    }
+
+    // bulk read only if the last one is older than maxAge seconds, for things
+    // that run between loops and can't tell if the loop already read
+    public DriveStateSnapshot updateIfOlderThan(double maxAge) {
+        if (System.nanoTime() - timestamp > maxAge * 1e9) {
+            update();
+        }
+        return this;
+    }
+
+    public DriveStateSnapshot update() {
+        long start = System.nanoTime();
+        for (int i = 0; i < hubs.size(); i++) {
+            hubs.get(i).clearBulkCache();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            position[i] = motors[i].getCurrentPosition();
+            velocity[i] = motors[i].getVelocity();
+        }
+
+        timestamp = System.nanoTime();
+        readTime.record(timestamp - start);
+
+        if (battery != null && timestamp - batteryTimestamp > BATTERY_PERIOD) {
+            double voltage = battery.getVoltage();
+            if (voltage > 0) {
+                batteryVoltage = voltage;
+            }
+            batteryTimestamp = timestamp;
+        }
+        return this;
+    }
+
+    // Target positions are not part of the bulk packet, so they are recorded
+    // here as they are written instead of being read back from the hub
+    public void setTarget(int wheel, int ticks) {
+        target[wheel] = ticks;
+    }
+
+    public int error(int wheel) {
+        return target[wheel] - position[wheel];
+    }
+
+    // true as soon as any wheel is inside the tolerance, this matches the old
+    // waitForTargetPosition() behaviour of stopping on the first wheel to arrive
+    public boolean anyWithin(int tolerance) {
+        for (int i = 0; i < 4; i++) {
+            if (Math.abs(error(i)) < tolerance) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
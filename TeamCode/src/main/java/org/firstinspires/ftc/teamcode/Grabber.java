@@ -3,35 +3,75 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+// open() and close() hand back a Motion that finishes once both servos have
+// had time to get there, see ServoModel, so callers wait exactly that long
 public class Grabber {
+    // From the robot rather than the datasheet: the Autos always slept 0.25 s
+    // after an open / close (90 degrees) and the grabber was there every time,
+    // so 90 degrees plus the settle margin fits in 0.25 s. Tighten it if a
+    // timed sweep says the servos are faster.
+    static final double SECONDS_PER_60 = (0.25 - 0.03) / 1.5;
+
     public Servo left;
     public Servo right;
 
+    private final ServoModel leftPosition;
+    private final ServoModel rightPosition;
+
 
     public boolean state = true;
 
     public Grabber(HardwareMap hardwareMap) {
+        this(hardwareMap, new CommandCache());
+    }
+
+    public Grabber(HardwareMap hardwareMap, CommandCache commands) {
         left = hardwareMap.get(Servo.class, "leftGrabber");
         right = hardwareMap.get(Servo.class, "rightGrabber");
+
+        leftPosition = new ServoModel(commands.position(left), 180, SECONDS_PER_60);
+        rightPosition = new ServoModel(commands.position(right), 180, SECONDS_PER_60);
     }
 
-    public void open() {
+    public Motion open() {
         state = true;
-        left.setPosition(0);
-        right.setPosition(1);
+        leftPosition.set(0);
+        rightPosition.set(1);
+        return settled;
     }
 
-    public void close() {
+    public Motion close() {
         state = false;
-        left.setPosition(90.0 / 180.0);
-        right.setPosition(90.0 / 180.0);
+        leftPosition.set(90.0 / 180.0);
+        rightPosition.set(90.0 / 180.0);
+        return settled;
     }
 
-    public void toggle() {
+    public Motion toggle() {
         if (state) {
-            close();
+            return close();
         } else {
-            open();
+            return open();
         }
     }
+
+    public boolean isSettled() {
+        return leftPosition.isSettled() && rightPosition.isSettled();
+    }
+
+    // nothing to drive, it is done when the servos are
+    private final Motion settled = new Motion() {
+        @Override
+        public boolean update() {
+            return isSettled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return isSettled();
+        }
+
+        @Override
+        public void cancel() {}
+    };
 }
@@ -0,0 +1,111 @@
+package org.firstinspires.ftc.teamcode;
+
+// Turns the robot to a heading along an angular motion profile
+//     The profile gives a heading and turn rate to be at for every moment of
+//     the turn. The turn rate is fed forward (kV, plus kS to get the wheels
+//     moving) and a PDController on the heading error and rate error corrects
+//     the rest, so the robot tracks the profile instead of charging at the
+//     target and oscillating around it.
+//
+//     Angles are degrees, counter clockwise positive like the IMU. Errors are
+//     wrapped to +-180 against the profile's setpoint, which only ever moves
+//     a little per loop, so crossing the IMU's +-180 seam is harmless.
+//
+//     The turn is settled once the profile has finished and the robot has
+//     stopped rotating (rate under settleRate for settleTime). That finishes
+//     as soon as the robot is still instead of waiting to creep inside a
+//     fixed tolerance. maxSettleError is only a sanity band in case the robot
+//     is stuck on something well short of the target.
+public class HeadingController {
+
+    public double maxVelocity = 240;      // deg/s
+    public double maxAcceleration = 720;  // deg/s^2
+
+    public double kV = 1 / 350.0;  // turn power per deg/s, from the wheel speed at full power
+    public double kS = 0.04;       // turn power to overcome friction
+    public final PDController pd = new PDController(0.02, 0.002).setOutputLimits(-0.5, 0.5);
+
+    public double settleRate = 3;      // deg/s
+    public double settleTime = 0.08;   // seconds
+    public double maxSettleError = 5;  // deg
+    public double holdDeadband = 1;    // deg, no kS push inside this while holding
+
+    private MotionProfile profile;
+    private double startHeading;
+    private double targetHeading;
+    private long startNanos;
+    private long stillSinceNanos = 0;
+    private boolean settled = false;
+
+    // turn by degrees (counter clockwise positive) from heading
+    public HeadingController startRelative(double heading, double degrees, long nowNanos) {
+        startHeading = heading;
+        targetHeading = heading + degrees;
+        profile = MotionProfile.trapezoidal(degrees, maxVelocity, maxAcceleration);
+        startNanos = nowNanos;
+        stillSinceNanos = 0;
+        settled = false;
+        return this;
+    }
+
+    // turn to target the short way round
+    public HeadingController startAbsolute(double heading, double target, long nowNanos) {
+        return startRelative(heading, wrap(target - heading), nowNanos);
+    }
+
+    // turn power for this loop, clockwise positive like MecanumDrive's turn input
+    public double update(double heading, double rate, long nowNanos) {
+        double t = (nowNanos - startNanos) / 1e9;
+        profile.sample(t);
+
+        double error = wrap(startHeading + profile.position - heading);
+        double output = kV * profile.velocity + pd.calculate(error, profile.velocity - rate);
+        if (Math.abs(output) > 1e-6) {
+            output += Math.signum(output) * kS;
+        }
+
+        if (profile.isFinished(t) && Math.abs(rate) < settleRate && Math.abs(error) < maxSettleError) {
+            if (stillSinceNanos == 0) {
+                stillSinceNanos = nowNanos;
+            }
+            settled = (nowNanos - stillSinceNanos) / 1e9 >= settleTime;
+        } else {
+            stillSinceNanos = 0;
+            settled = false;
+        }
+
+        return -output;
+    }
+
+    // no profile, just hold target, for driving straight in TeleOp
+    public double hold(double target, double heading, double rate) {
+        double error = wrap(target - heading);
+        double output = pd.calculate(error, -rate);
+        if (Math.abs(error) > holdDeadband) {
+            output += Math.signum(output) * kS;
+        }
+        return -output;
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    public double getTarget() {
+        return targetHeading;
+    }
+
+    public double getError(double heading) {
+        return wrap(targetHeading - heading);
+    }
+
+    public static double wrap(double degrees) {
+        degrees %= 360;
+        if (degrees >= 180) {
+            degrees -= 360;
+        } else if (degrees < -180) {
+            degrees += 360;
+        }
+        return degrees;
+    }
+}
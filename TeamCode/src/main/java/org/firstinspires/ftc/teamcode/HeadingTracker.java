@@ -0,0 +1,65 @@
+package org.firstinspires.ftc.teamcode;
+
+// Turns the IMU's -180..180 yaw into one continuous heading
+//     Each new yaw is compared with the last one. The change is taken as the
+//     multiple of 360 that best matches what the measured turn rate says
+//     should have happened since the last sample, so a fast spin across the
+//     seam is counted correctly even if it moved more than 180 between
+//     samples.
+//
+//     A change the rate can't explain (more than jumpTolerance away) is the
+//     IMU resetting itself, e.g. after a brownout. The heading then carries on
+//     from the rate alone instead of jumping with it. Resets we ask for go
+//     through reset() instead.
+//
+//     Degrees, counter clockwise positive.
+public class HeadingTracker {
+
+    public double jumpTolerance = 30; // deg, on top of half the expected change
+
+    private boolean initialized = false;
+    private double lastYaw;
+    private long lastNanos;
+    private double heading;
+    private int jumps = 0;
+
+    public double update(double yaw, double rate, long nanos) {
+        if (!initialized) {
+            initialized = true;
+            heading = yaw;
+        } else {
+            double expected = rate * (nanos - lastNanos) / 1e9;
+            double delta = yaw - lastYaw;
+            delta -= 360 * Math.round((delta - expected) / 360);
+
+            if (Math.abs(delta - expected) > jumpTolerance + Math.abs(expected) / 2) {
+                jumps++;
+                delta = expected;
+            }
+            heading += delta;
+        }
+        lastYaw = yaw;
+        lastNanos = nanos;
+        return heading;
+    }
+
+    // the IMU was just zeroed, start again from its next reading
+    public void reset() {
+        initialized = false;
+    }
+
+    // continuous, can be past +-180
+    public double getHeading() {
+        return heading;
+    }
+
+    // the same heading in -180..180
+    public double getWrapped() {
+        return HeadingController.wrap(heading);
+    }
+
+    // yaw jumps that were ignored
+    public int getJumps() {
+        return jumps;
+    }
+}
@@ -0,0 +1,30 @@
+package org.firstinspires.ftc.teamcode;
+
+// One IMU reading, yaw and yaw rate taken together
+//     Immutable, so ImuSampler can hand it to the OpMode thread without locking.
+//     Degrees and degrees per second, counter clockwise positive. heading is
+//     the continuous version from HeadingTracker, yaw is that wrapped to +-180.
+public final class ImuSample {
+    public final double yaw;
+    public final double heading;
+    public final double yawRate;
+
+    // System.nanoTime() when the reading finished
+    public final long timestamp;
+
+    public ImuSample(double heading, double yawRate, long timestamp) {
+        this.yaw = HeadingController.wrap(heading);
+        this.heading = heading;
+        this.yawRate = yawRate;
+        this.timestamp = timestamp;
+    }
+
+    public double ageMs() {
+        return (System.nanoTime() - timestamp) / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f deg, %.1f deg/s", yaw, yawRate);
+    }
+}
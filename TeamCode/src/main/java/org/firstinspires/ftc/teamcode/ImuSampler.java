@@ -0,0 +1,144 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Reads the IMU on its own thread and keeps the latest sample
+//     Every IMU call is an I2C transaction that takes a few milliseconds. Doing
+//     them here at a fixed rate means the OpMode loop only ever reads a field,
+//     however many things want the heading. get() never blocks and never
+//     returns null, there is always at least the sample from construction.
+//
+//     The thread stops by itself when the thread that started it (the OpMode)
+//     ends, so nothing is left reading the IMU after stop is pressed.
+public class ImuSampler {
+
+    private static final String TAG = "ImuSampler";
+
+    private final IMU imu;
+    private final long periodNanos;
+    private final AtomicReference<ImuSample> latest = new AtomicReference<>();
+    private final HeadingTracker tracker = new HeadingTracker();
+
+    // both I2C reads of one sample, recorded under the lock in sample() and
+    // logged by the sampling thread when it stops, don't read it elsewhere
+    public final LoopHistogram readTime = new LoopHistogram("IMU read");
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // effective rate, counted over roughly one second windows
+    private long windowStart = 0;
+    private int windowSamples = 0;
+    private volatile double effectiveRate = 0;
+
+    public ImuSampler(IMU imu, double rateHz) {
+        this.imu = imu;
+        this.periodNanos = (long) (1e9 / rateHz);
+        sample();
+    }
+
+    public ImuSampler(IMU imu) {
+        this(imu, 100);
+    }
+
+    public ImuSampler start() {
+        if (running) {
+            return this;
+        }
+        running = true;
+
+        final Thread owner = Thread.currentThread();
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long next = System.nanoTime();
+                while (running && owner.isAlive() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        sample();
+                    } catch (RuntimeException e) {
+                        RobotLog.ww(TAG, "read failed: %s", e.toString());
+                    }
+
+                    next += periodNanos;
+                    long now = System.nanoTime();
+                    if (next < now) {
+                        next = now; // fell behind, don't try to catch up in a burst
+                    } else {
+                        LockSupport.parkNanos(next - now);
+                    }
+                }
+                running = false;
+                // resetYaw() samples from the OpMode thread, take the lock to see its records
+                synchronized (ImuSampler.this) {
+                    readTime.log();
+                }
+            }
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // synchronized so a resetYaw() read can't interleave with the thread's
+    private synchronized void sample() {
+        long start = System.nanoTime();
+        double yaw = imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES);
+        double rate = imu.getRobotAngularVelocity(AngleUnit.DEGREES).zRotationRate;
+        long now = System.nanoTime();
+        readTime.record(now - start);
+        // unwrapped here at the full sample rate, the closer together the
+        // samples the less can happen between them
+        latest.set(new ImuSample(tracker.update(yaw, rate, now), rate, now));
+
+        if (windowStart == 0) {
+            windowStart = now;
+        } else if (now - windowStart >= 1000000000L) {
+            effectiveRate = windowSamples / ((now - windowStart) / 1e9);
+            windowStart = now;
+            windowSamples = 0;
+        }
+        windowSamples++;
+    }
+
+    public ImuSample get() {
+        return latest.get();
+    }
+
+    // resets the IMU and replaces the sample straight away so nobody sees the old yaw
+    public synchronized void resetYaw() {
+        imu.resetYaw();
+        tracker.reset();
+        sample();
+    }
+
+    // IMU resets we didn't ask for, see HeadingTracker
+    public int getUnexpectedResets() {
+        return tracker.getJumps();
+    }
+
+    public double getAgeMs() {
+        return get().ageMs();
+    }
+
+    // samples per second actually achieved, 0 until the first second has passed
+    public double getEffectiveRate() {
+        return effectiveRate;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,81 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import java.util.Random;
+
+// Times the old calculateDirections math against MecanumKinematics on the hub
+//     No hardware is touched, this just needs to run on the Control Hub CPU.
+//     Each pass runs both versions over the same stick inputs and shows ns/call.
+@TeleOp(name = "Kinematics Benchmark", group = "Tests")
+public class KinematicsBenchmark extends LinearOpMode {
+
+    final int CALLS = 200000;
+    final int PASSES = 5;
+
+    // written so the JIT can't throw the work away
+    private double sink;
+
+    // the math calculateDirectionsFieldCentric used before MecanumKinematics
+    private double flP, frP, blP, brP;
+
+    @Override
+    public void runOpMode() {
+        MecanumKinematics kinematics = new MecanumKinematics(Calibration.DEFAULTS.ticksPerInch, Calibration.DEFAULTS.ticksPerDegree * 180 / Math.PI);
+
+        double[] xs = new double[1024];
+        double[] ys = new double[1024];
+        double[] turns = new double[1024];
+        Random random = new Random(7);
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble() * 2 - 1;
+            ys[i] = random.nextDouble() * 2 - 1;
+            turns[i] = (random.nextDouble() * 2 - 1) * 0.5;
+        }
+
+        telemetry.addData(">", "Press play to start the benchmark");
+        telemetry.update();
+        waitForStart();
+
+        double legacyNs = 0;
+        double newNs = 0;
+        for (int pass = 0; pass < PASSES && opModeIsActive(); pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                int n = i & 1023;
+                legacy(xs[n], ys[n], turns[n], 0.3);
+                sink += flP + frP + blP + brP;
+            }
+            legacyNs = (System.nanoTime() - start) / (double) CALLS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                int n = i & 1023;
+                kinematics.inverseFieldCentric(xs[n], ys[n], turns[n], 0.3);
+                sink += kinematics.frontLeft + kinematics.frontRight + kinematics.backLeft + kinematics.backRight;
+            }
+            newNs = (System.nanoTime() - start) / (double) CALLS;
+
+            telemetry.addData("Pass", "%d of %d", pass + 1, PASSES);
+            telemetry.addData("Legacy ns/call", "%.1f", legacyNs);
+            telemetry.addData("MecanumKinematics ns/call", "%.1f", newNs);
+            telemetry.addData("Speedup", "%.2fx", legacyNs / newNs);
+            telemetry.addData("sink", sink);
+            telemetry.update();
+        }
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private void legacy(double x, double y, double turn, double heading) {
+        double phi = Math.atan2(y, x) - heading;
+
+        blP = -Math.hypot(x, y) * Math.sin(phi + (Math.PI / 4)) + turn;
+        flP = -Math.hypot(x, y) * Math.sin(phi - (Math.PI / 4)) + turn;
+        brP = -Math.hypot(x, y) * Math.sin(phi + (Math.PI / 4)) - turn;
+        frP = -Math.hypot(x, y) * Math.sin(phi - (Math.PI / 4)) - turn;
+    }
+}
@@ -1,14 +1,40 @@
 package org.firstinspires.ftc.teamcode;
 
+import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.Supplier;
 
+import java.util.List;
 
+// The lift runs its own position control instead of RUN_TO_POSITION
+//     Big moves follow a trapezoidal profile, small ones (manual nudges) go
+//     straight to the hold controller. Power is gravity feedforward (kG), plus
+//     kV / kA for the profile's velocity and acceleration, plus kP on the
+//     position error. RUN_TO_POSITION at power 1 went full speed into the top
+//     and bounced, this slows down before it gets there.
+//
+//     Nothing moves unless update() is called, every loop. Robot does that
+//     from its timers during sleeps and blocking drive moves. Loops of your
+//     own should call it after the bulk read.
 public class Lift {
-    private DcMotor liftMotor;
+    private DcMotorEx liftMotor;
+    private final CommandCache.Channel power;
+    private final MotorModeTracker mode;
+    private final List<LynxModule> hubs;
+    private final TimerService timers;
+
+    // stall detection, see LiftMonitor for what counts
+    public final LiftMonitor monitor;
+    // set by a stall with action CUT, cleared by the next move
+    private boolean stalled = false;
+
+    // iteration times of the last setPosition wait
+    public final LoopHistogram loop = new LoopHistogram("lift setPosition");
 
     private int TOP_LIMIT = 3010;
 
@@ -28,46 +54,224 @@ public class Lift {
 
     private int delta = 20;
 
+    // profile limits, ticks
+    public double maxVelocity = 2400;
+    public double maxAcceleration = 8000;
+    // moves shorter than this skip the profile
+    public int profileThreshold = 150;
+
+    public double kG = 0.12;          // power to hold the lift against gravity
+    public double kV = 1 / 2800.0;    // power per tick/s
+    public double kA = 0.00004;       // power per tick/s^2
+    public double kP = 0.005;         // power per tick of error
+    public double maxDownPower = 0.6; // the lift falls fast enough on its own
+    public int tolerance = 25;        // ticks
+    public int restTicks = 20;        // below this with a target of 0 the lift just sits on the bottom
+    // kP alone can't always pull the last few ticks in against friction, so a
+    // move is also done once the profile has finished and the lift has been
+    // still for settleTime
+    public double settleVelocity = 40; // ticks/s
+    public double settleTime = 0.15;   // seconds
+    public double timeout = 3.0;       // seconds, setPosition gives up after this
+
+    private int goal = 0;
+    private MotionProfile profile = null;
+    private double profileStartPosition;
+    private long profileStartNanos;
+    private double setpoint = 0;
+    private LiftMove current = null;
+    private long stillSince = 0;
+
     public Lift(HardwareMap hardwareMap) {
-        liftMotor = hardwareMap.get(DcMotor.class, "lift");
-        liftMotor.setPower(1);
+        this(hardwareMap, new CommandCache());
+    }
+
+    public Lift(HardwareMap hardwareMap, CommandCache commands) {
+        this(hardwareMap, commands, new TimerService());
+    }
+
+    public Lift(HardwareMap hardwareMap, CommandCache commands, TimerService timers) {
+        this.timers = timers;
+        liftMotor = hardwareMap.get(DcMotorEx.class, "lift");
+        monitor = new LiftMonitor(liftMotor);
+        power = commands.power(liftMotor);
+        mode = new MotorModeTracker(liftMotor);
+        hubs = hardwareMap.getAll(LynxModule.class);
         liftMotor.setDirection(DcMotorSimple.Direction.REVERSE);
-        liftMotor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        mode.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        mode.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        mode.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
         //this.isStopRequested = isStopRequested;
 
     }
 
-    public boolean isActive() {return liftMotor.isBusy();}
+    public boolean isActive() {return profile != null || !isAtTarget();}
+
+    public boolean isAtTarget() {
+        return profile == null && Math.abs(goal - getPosition()) <= tolerance;
+    }
+
+    // as close as it is going to get
+    public boolean isSettled() {
+        return stillSince != 0 && System.nanoTime() - stillSince >= settleTime * 1e9;
+    }
 
     public int getTarget() {
-        return liftMotor.getTargetPosition();
+        return goal;
     }
     public int getPosition(){
         return liftMotor.getCurrentPosition();
     }
 
+    // blocking, for code that has nothing else to do meanwhile. Parks between
+    // loops like Robot.waitFor() and gives up after timeout or once the
+    // OpMode is stopped, the lift keeps holding whatever target it has.
     public Lift setPosition(int ticks) {
-        this.setPositionAsync(ticks);
-        while (this.liftMotor.isBusy()) {}
+        Motion move = moveTo(ticks);
+        long deadline = System.nanoTime() + (long) (timeout * 1e9);
+        loop.reset();
+        while (true) {
+            // the hubs are in manual bulk caching, positions only change after a clear
+            for (int i = 0; i < hubs.size(); i++) {
+                hubs.get(i).clearBulkCache();
+            }
+            if (move.update() || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (System.nanoTime() >= deadline) {
+                RobotLog.ww("Lift", "setPosition(%d) timed out at %d", ticks, getPosition());
+                break;
+            }
+            timers.sleep(0.005);
+            loop.lap();
+        }
+        loop.log();
         return this;
     }
 
     public Lift setPositionAsync(int ticks) {
-        this.liftMotor.setTargetPosition(bound(ticks));
-        this.liftMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        moveTo(ticks);
         return this;
     }
 
+    // start moving to ticks, the handle finishes once the lift is there
+    public Motion moveTo(int ticks) {
+        ticks = bound(ticks);
+        if (current != null && ticks == goal) {
+            return current;
+        }
+
+        double distance = ticks - setpoint;
+        if (Math.abs(distance) >= profileThreshold) {
+            // from where the lift should be now, not where it is, so a
+            // retarget partway through doesn't jump back
+            profile = MotionProfile.trapezoidal(distance, maxVelocity, maxAcceleration);
+            profileStartPosition = setpoint;
+            profileStartNanos = System.nanoTime();
+        } else {
+            profile = null;
+            setpoint = ticks;
+        }
+        goal = ticks;
+        stalled = false;
+        stillSince = 0;
+        current = new LiftMove(ticks);
+        return current;
+    }
+
+    // one control loop, uses the lift position from the last bulk read
+    public Lift update() {
+        int position = getPosition();
+        double velocity = 0;
+        double acceleration = 0;
+
+        if (profile != null) {
+            double t = (System.nanoTime() - profileStartNanos) / 1e9;
+            profile.sample(t);
+            setpoint = profileStartPosition + profile.position;
+            velocity = profile.velocity;
+            acceleration = profile.acceleration;
+            if (profile.isFinished(t)) {
+                profile = null;
+                setpoint = goal;
+            }
+        }
+
+        double output;
+        if (stalled || (goal == 0 && profile == null && position < restTicks)) {
+            output = 0;
+        } else {
+            output = kG + kV * velocity + kA * acceleration + kP * (setpoint - position);
+        }
+        output = Math.max(-maxDownPower, Math.min(1, output));
+
+        double measured = liftMotor.getVelocity();
+        long now = System.nanoTime();
+        if (profile != null || Math.abs(measured) >= settleVelocity) {
+            stillSince = 0;
+        } else if (stillSince == 0) {
+            stillSince = now;
+        }
+
+        if (monitor.update(output, measured, now)) {
+            // give up on the move, either way the handle finishes here
+            profile = null;
+            goal = position;
+            setpoint = position;
+            if (monitor.action == LiftMonitor.Action.CUT) {
+                stalled = true;
+                output = 0;
+            } else {
+                output = kG;
+            }
+        }
+        power.set(output);
+        return this;
+    }
+
+    private class LiftMove implements Motion {
+        private final int ticks;
+        private boolean done = false;
+
+        LiftMove(int ticks) {
+            this.ticks = ticks;
+        }
+
+        @Override
+        public boolean update() {
+            if (!isDone()) {
+                Lift.this.update();
+            }
+            return isDone();
+        }
+
+        // also done once another move has replaced this one
+        @Override
+        public boolean isDone() {
+            if (!done) {
+                done = goal != ticks || isAtTarget() || isSettled();
+            }
+            return done;
+        }
+
+        @Override
+        public void cancel() {
+            if (!isDone()) {
+                moveTo(getPosition());
+                done = true;
+            }
+        }
+    }
 
     public Lift up() {
-        int currentPosition = this.liftMotor.getTargetPosition();
+        int currentPosition = getTarget();
         setPositionAsync(currentPosition+delta);
         return this;
     }
 
     public Lift down() {
-        int currentPosition = this.liftMotor.getTargetPosition();
+        int currentPosition = getTarget();
         setPositionAsync(currentPosition-delta);
         return this;
     }
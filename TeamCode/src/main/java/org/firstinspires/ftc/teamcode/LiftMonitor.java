@@ -0,0 +1,89 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+// Spots the lift pushing against something it can't move
+//     A stall is the lift being driven hard (stallPower or more) while either
+//     barely moving or drawing more than currentLimit, for a whole window.
+//     Velocity comes from the bulk read so it costs nothing. Motor current
+//     isn't part of the bulk read, it is its own hub transaction, so it is
+//     only read every currentPeriod and only while the lift is pushing.
+//
+//     Lift decides what to do about it (action), every stall is logged with
+//     the time since the monitor started.
+public class LiftMonitor {
+
+    public enum Action { CUT, HOLD }
+
+    public Action action = Action.HOLD;
+    public double stallPower = 0.4;
+    public double stallVelocity = 40;   // ticks/s
+    public double currentLimit = 5.0;   // amps
+    public double window = 0.3;         // seconds
+    public double currentPeriod = 0.1;  // seconds
+
+    private final DcMotorEx motor;
+    private final long startNanos = System.nanoTime();
+
+    private long suspectSince = 0;
+    private long lastCurrentNanos = 0;
+    private double current = 0;
+
+    private int stalls = 0;
+    private double lastStallTime = Double.NaN;
+
+    public LiftMonitor(DcMotorEx motor) {
+        this.motor = motor;
+    }
+
+    // call once per control loop with the power about to be sent, returns
+    // true on the loop a stall is confirmed
+    public boolean update(double power, double velocity, long nowNanos) {
+        boolean pushing = Math.abs(power) >= stallPower;
+        if (!pushing) {
+            current = 0;
+            suspectSince = 0;
+            return false;
+        }
+
+        if (nowNanos - lastCurrentNanos >= currentPeriod * 1e9) {
+            current = motor.getCurrent(CurrentUnit.AMPS);
+            lastCurrentNanos = nowNanos;
+        }
+
+        if (Math.abs(velocity) >= stallVelocity && current <= currentLimit) {
+            suspectSince = 0;
+            return false;
+        }
+        if (suspectSince == 0) {
+            suspectSince = nowNanos;
+        }
+        if (nowNanos - suspectSince < window * 1e9) {
+            return false;
+        }
+
+        suspectSince = 0;
+        stalls++;
+        lastStallTime = (nowNanos - startNanos) / 1e9;
+        RobotLog.ww("LiftMonitor", "stall at %.3f s: power %.2f, velocity %.0f ticks/s, current %.2f A, %s",
+                lastStallTime, power, velocity, current, action);
+        return true;
+    }
+
+    public int getStalls() {
+        return stalls;
+    }
+
+    // seconds since start of the last stall, NaN if there hasn't been one
+    public double getLastStallTime() {
+        return lastStallTime;
+    }
+
+    // last current reading, 0 while the lift isn't pushing
+    public double getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,115 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+// Distribution of loop or call times in fixed buckets
+//     BUCKETS buckets of BUCKET_MICROS each plus one overflow bucket, all in a
+//     primitive array, so record() is a divide and an increment and never
+//     allocates. Percentiles are read back at bucket resolution, max is
+//     exact. The fields are plain, so a histogram must only be recorded and
+//     read (addTo, log, percentiles) from one thread. The sampler threads log
+//     theirs when they stop instead of showing them on telemetry.
+//
+//     Two ways to feed it: record(nanos) around a call, or lap() once per loop
+//     iteration to record the time since the previous lap().
+public class LoopHistogram {
+
+    private static final int BUCKETS = 400;
+    private static final long BUCKET_MICROS = 250; // 0 to 100ms
+
+    public final String name;
+
+    private final long[] counts = new long[BUCKETS + 1];
+    private long count = 0;
+    private long maxNanos = 0;
+    private long totalNanos = 0;
+    private long lastLap = 0;
+
+    // addTo() formats at most this often, telemetry only goes out every 250ms
+    private static final long REPORT_PERIOD = 500000000L; // 500ms
+    private String report = "";
+    private long reportNanos = 0;
+
+    public LoopHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        int bucket = (int) Math.min(BUCKETS, nanos / 1000 / BUCKET_MICROS);
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    // record the time since the last lap, the first lap only starts the clock
+    public void lap() {
+        long now = System.nanoTime();
+        if (lastLap != 0) {
+            record(now - lastLap);
+        }
+        lastLap = now;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        maxNanos = 0;
+        totalNanos = 0;
+        lastLap = 0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // upper edge of the bucket the p'th fraction (0-1) falls in, in ms
+    public double percentileMs(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * BUCKET_MICROS / 1000.0, maxMs());
+            }
+        }
+        return maxMs();
+    }
+
+    public double maxMs() {
+        return maxNanos / 1e6;
+    }
+
+    public double meanMs() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                count, percentileMs(0.5), percentileMs(0.99), maxMs());
+    }
+
+    // cheap enough to call every loop, the string is only rebuilt every REPORT_PERIOD
+    public void addTo(Telemetry telemetry) {
+        long now = System.nanoTime();
+        if (reportNanos == 0 || now - reportNanos > REPORT_PERIOD) {
+            report = toString();
+            reportNanos = now;
+        }
+        telemetry.addData(name, report);
+    }
+
+    public void log() {
+        RobotLog.ii("LoopHistogram", "%s: %s", name, toString());
+    }
+}
@@ -6,15 +6,20 @@ package org.firstinspires.ftc.teamcode;
  * Written By Lukas Werner ('22)
  */
 
-import com.qualcomm.hardware.rev.Rev2mDistanceSensor;
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.RobotLog;
 
-import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
-import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
 
 public class MecanumDrive {
 
@@ -23,9 +28,14 @@ public class MecanumDrive {
     public double speed = 1;
     private  double oldSpeed = 1;
 
-    static final double TICKS_PER_INCH = 40.88721;
+    // measured by the Drive Calibration OpMode, see Calibration
+    public final Calibration calibration;
+    final double ticksPerInch;
+    final double ticksPerDegree;
+
+    public final MecanumKinematics kinematics;
 
-    final double ticksPerDegree = 700 / 90.0;
+    public final PoseEstimator poseEstimator;
 
     //front left
     private double flP = 0;
@@ -39,13 +49,73 @@ public class MecanumDrive {
     //back right
     private double brP = 0;
 
-	//gyro stabilization
-	public double gyroModifier = 0;
-
-    public final DcMotor leftFront;
-    public final DcMotor rightFront;
-    public final DcMotor leftBack;
-    public final DcMotor rightBack;
+    // limits for profiled moves in inches and seconds, velocity is scaled by speed
+    public double maxVelocity = 55;
+    public double maxAcceleration = 60;
+    public double maxJerk = 400;
+    public boolean useSCurve = true;
+
+    // trajectory following, inches/s of correction per inch of error and
+    // turn power per radian of heading error
+    public double trajectoryKp = 4;
+    public double trajectoryHeadingKp = 1.0;
+
+    // Closed loop wheel speed, off by default, the TeleOp turns it on. When
+    // on, wheel powers from the open loop API (sticks, goFor) are treated as
+    // a fraction of maxWheelVelocity and each wheel is driven there by its own
+    // controller. Needs readState() every loop. Encoder moves run on the hub
+    // in RUN_TO_POSITION and never come through here.
+    public boolean velocityControl = false;
+    public double maxWheelVelocity = 2700; // ticks/s at full power
+    public final WheelVelocityController[] wheelControllers = new WheelVelocityController[4];
+    private final double[] lastWheelTarget = new double[4];
+    private long lastControlTimestamp = 0;
+
+    // Slew limits on applyPower(), off by default. Each wheel's power is split
+    // into its translation and rotation parts and only the translation is
+    // limited, in power per second. Rotation passes straight through, the
+    // heading hold in calcGyroStabilized() is a feedback loop and a ramp on its
+    // output would only add lag. off() still stops at once.
+    public boolean limitAcceleration = false;
+    public final AccelerationLimiter[] translationLimiters = {
+            new AccelerationLimiter(4.0), new AccelerationLimiter(4.0),
+            new AccelerationLimiter(4.0), new AccelerationLimiter(4.0)};
+
+    // interruptableGoTarget stops this far from whatever the distance sensor sees
+    public double stopDistanceCm = 10;
+    public double stopReactionTime = 0.05;  // seconds from decision to the motors acting
+    public double stopDeceleration = 150;   // cm/s^2 when braking to a held target
+
+    // iteration times of the last blocking move, reset at the start of each one
+    public final LoopHistogram moveLoop = new LoopHistogram("drive move");
+
+    // turns and heading hold
+    public final HeadingController headingController = new HeadingController();
+    // IMU sample from the last readState(), degrees and degrees/s counter clockwise
+    //     heading is continuous and is what every controller uses, yaw is the
+    //     same angle wrapped to +-180 for display
+    public double heading;
+    public double yaw;
+    public double yawRate;
+
+    public final DcMotorEx leftFront;
+    public final DcMotorEx rightFront;
+    public final DcMotorEx leftBack;
+    public final DcMotorEx rightBack;
+
+    // every control loop reads the wheels through this, one bulk read per spin
+    public final DriveStateSnapshot state;
+
+    // power and target writes, indexed like the snapshot
+    public final CommandCache commands;
+    private final CommandCache.Channel[] power;
+    private final CommandCache.Channel[] target;
+
+    // run mode and zero power writes are skipped when nothing would change
+    public final MotorModeTracker modes;
+
+    // wheel positions the current relative move is measured from
+    private final int[] baseline = new int[4];
 
     //public Supplier<Boolean> isStopRequested;
 
@@ -57,16 +127,41 @@ public class MecanumDrive {
 
     private ElapsedTime runtime;
 
+    // sleeps park the thread here, and blocking moves poll it every loop
+    public final TimerService timers;
+
     public IMU imu;
+    public final ImuSampler imuSampler;
 
 
     public MecanumDrive(HardwareMap hardwareMap, ElapsedTime runtime, IMU imu) {
-        this.leftFront = hardwareMap.get(DcMotor.class, "fL");
-        this.rightFront = hardwareMap.get(DcMotor.class, "fR");
-        this.leftBack = hardwareMap.get(DcMotor.class, "bL");
-        this.rightBack = hardwareMap.get(DcMotor.class, "bR");
+        this(hardwareMap, runtime, imu, new CommandCache(), new TimerService(), new ImuSampler(imu).start());
+    }
+
+    public MecanumDrive(HardwareMap hardwareMap, ElapsedTime runtime, IMU imu, CommandCache commands, TimerService timers, ImuSampler imuSampler) {
+        this.calibration = Calibration.load();
+        this.ticksPerInch = calibration.ticksPerInch;
+        this.ticksPerDegree = calibration.ticksPerDegree;
+        this.kinematics = new MecanumKinematics(ticksPerInch, ticksPerDegree * 180 / Math.PI);
+        this.poseEstimator = new PoseEstimator(ticksPerInch, ticksPerDegree * 180 / Math.PI);
+
+        this.leftFront = hardwareMap.get(DcMotorEx.class, "fL");
+        this.rightFront = hardwareMap.get(DcMotorEx.class, "fR");
+        this.leftBack = hardwareMap.get(DcMotorEx.class, "bL");
+        this.rightBack = hardwareMap.get(DcMotorEx.class, "bR");
+
+        this.state = new DriveStateSnapshot(hardwareMap, leftFront, rightFront, leftBack, rightBack);
+
+        this.commands = commands;
+        this.power = new CommandCache.Channel[] {
+                commands.power(leftFront), commands.power(rightFront),
+                commands.power(leftBack), commands.power(rightBack)};
+        this.target = new CommandCache.Channel[] {
+                commands.target(leftFront), commands.target(rightFront),
+                commands.target(leftBack), commands.target(rightBack)};
 
         this.imu = imu;
+        this.imuSampler = imuSampler;
         //this.isStopRequested = isStopRequested;
 
         this.leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
@@ -74,18 +169,22 @@ public class MecanumDrive {
         this.rightFront.setDirection(DcMotorSimple.Direction.FORWARD);
         this.rightBack.setDirection(DcMotorSimple.Direction.FORWARD);
 
-        this.leftFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        // indexed like the snapshot
+        this.modes = new MotorModeTracker(leftFront, rightFront, leftBack, rightBack);
 
-        this.leftFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        // the only encoder reset, after this every move is relative to a baseline
+        this.modes.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        this.modes.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
 
         this.runtime = runtime;
 
+        for (int i = 0; i < 4; i++) {
+            // rough starting point, 12V at full speed, tune with the characterization OpMode
+            wheelControllers[i] = new WheelVelocityController(0.6, 12.0 / maxWheelVelocity, 0, 0.002, 0, 0);
+        }
+        loadFeedforward(new File(AppUtil.FIRST_FOLDER, DriveFeedforwardFitter.FILE_NAME));
+        this.timers = timers;
+
     }
 
     public double magnitude(double x, double y) {
@@ -97,59 +196,20 @@ public class MecanumDrive {
     }
 
     public void sleep(double sleepTime) {
-        double time = runtime.time();
-        double initTime = time;
-
-        while (time <= initTime + sleepTime) {
-            time = runtime.time();
-        }
+        timers.sleep(sleepTime);
     }
     public MecanumDrive calculateDirectionsRobotCentric(double x, double y, double turn) {
-
-        double phi = (angle(x,y));
-
-        this.blP =
-                magnitude(x,y)
-                        * Math.sin( phi + (Math.PI / 4))
-                        + turn; // flP
-        this.flP =
-                magnitude(x,y)
-                        * Math.sin(phi - (Math.PI / 4))
-                        + turn; // blP
-
-        this.brP =
-                magnitude(x,y)
-                        * Math.sin(phi + (Math.PI / 4))
-                        - turn; // frP
-        this.frP =
-                magnitude(x,y)
-                        * Math.sin(phi - (Math.PI / 4))
-                        - turn; // brP
-
-        return this;
+        return usePowers(kinematics.inverse(x, y, turn));
     }
     public MecanumDrive calculateDirectionsFieldCentric(double x, double y, double turn, double heading) {
+        return usePowers(kinematics.inverseFieldCentric(x, y, turn, heading));
+    }
 
-        double phi = (angle(x,y)-heading);
-
-        this.blP =
-                magnitude(x,y)
-                        * Math.sin( phi + (Math.PI / 4))
-                        + turn; // flP
-        this.flP =
-                magnitude(x,y)
-                        * Math.sin(phi - (Math.PI / 4))
-                        + turn; // blP
-
-        this.brP =
-                magnitude(x,y)
-                        * Math.sin(phi + (Math.PI / 4))
-                        - turn; // frP
-        this.frP =
-                magnitude(x,y)
-                        * Math.sin(phi - (Math.PI / 4))
-                        - turn; // brP
-
+    private MecanumDrive usePowers(MecanumKinematics k) {
+        this.flP = k.frontLeft;
+        this.frP = k.frontRight;
+        this.blP = k.backLeft;
+        this.brP = k.backRight;
         return this;
     }
 
@@ -158,33 +218,13 @@ public class MecanumDrive {
         return this;
     }
 
+    // drive with x / y while holding target heading (degrees), uses the IMU
+    // sample from the last readState()
 	public MecanumDrive calcGyroStabilized(double x, double y, double target) {
-        double gyroAngle = this.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES);
-
-		if (target - (gyroAngle + gyroModifier) > 180) {
-			gyroModifier += 360;
-        }
-		if (target - (gyroAngle + gyroModifier) < -179) {
-			gyroModifier -= 360;
-        }
-
-		/*
-		 * This 1 and -1 should probably be variable as we get closer to our targets.
-		 */
-
-		if (target - (gyroAngle + gyroModifier) > 0) {
-			calculateDirectionsRobotCentric(x, y, clip((target - (gyroAngle + gyroModifier))/-8));
-		}
-		if (target - (gyroAngle + gyroModifier) < 0) {
-			calculateDirectionsRobotCentric(x, y, clip((target - (gyroAngle + gyroModifier))/-8));
-		}
-
-        
-        //see Roman if this doesn't work. He doesn't know how it works either, but he made it.
+        calculateDirectionsRobotCentric(x, y, headingController.hold(target, heading, yawRate));
         return this;
     }
 
-
     public double clip(double a) {
         if (Math.abs(a) < 0.15) {
             return  (Math.abs(a) / a) * 0.15;
@@ -197,185 +237,206 @@ public class MecanumDrive {
         blP = 0;
         frP = 0;
         brP = 0;
-        leftFront.setPower(0);
-        rightFront.setPower(0);
-        leftBack.setPower(0);
-        rightBack.setPower(0);
+        setPowers(0, 0, 0, 0);
+
+        for (int i = 0; i < 4; i++) {
+            wheelControllers[i].reset();
+            lastWheelTarget[i] = 0;
+        }
+        lastControlTimestamp = 0;
+
+        for (AccelerationLimiter limiter : translationLimiters) {
+            limiter.reset(0);
+        }
         return this;
     }
 
     public MecanumDrive applyPower() {
-        leftFront.setPower(flP * speed);
-        rightFront.setPower(frP * speed);
-        leftBack.setPower(blP * speed);
-        rightBack.setPower(brP * speed);
+        openLoop();
+        if (limitAcceleration) {
+            limitedPowers(flP * speed, frP * speed, blP * speed, brP * speed);
+        } else {
+            driveWheels(flP * speed, frP * speed, blP * speed, brP * speed);
+        }
         return this;
     }
 
-    public MecanumDrive goFor(double seconds) {
-        applyPower();
-        sleep(seconds);
-        off();
-        return this;
+    // turn is +LF +LB -RF -RB, whatever is left over on each wheel is translation
+    private void limitedPowers(double LF, double RF, double LB, double RB) {
+        long now = System.nanoTime();
+        double turn = (LF - RF + LB - RB) / 4;
+
+        double lf = translationLimiters[DriveStateSnapshot.LEFT_FRONT].calculate(LF - turn, now) + turn;
+        double rf = translationLimiters[DriveStateSnapshot.RIGHT_FRONT].calculate(RF + turn, now) - turn;
+        double lb = translationLimiters[DriveStateSnapshot.LEFT_BACK].calculate(LB - turn, now) + turn;
+        double rb = translationLimiters[DriveStateSnapshot.RIGHT_BACK].calculate(RB + turn, now) - turn;
+
+        // the two parts can add up past full power while the translation catches up
+        double max = Math.max(Math.max(Math.abs(lf), Math.abs(rf)), Math.max(Math.abs(lb), Math.abs(rb)));
+        if (max > 1.0) {
+            lf /= max;
+            rf /= max;
+            lb /= max;
+            rb /= max;
+        }
+        driveWheels(lf, rf, lb, rb);
     }
 
-    public MecanumDrive variableGoDist(double runningDistance, double power) {
-
+    public MecanumDrive goFor(double seconds) {
+        return waitFor("goFor", goForAsync(seconds));
+    }
 
+    public DriveMotion goForAsync(final double seconds) {
+        return new DriveMotion() {
+            private double startTime;
 
+            @Override
+            protected void start() {
+                applyPower();
+                startTime = runtime.time();
+            }
 
+            @Override
+            protected boolean step() {
+                // every loop, so velocity control works from fresh wheel speeds
+                // and limitAcceleration can finish its ramp
+                readState();
+                applyPower();
+                return runtime.time() > startTime + seconds;
+            }
 
-        // clip the powers to -1 and 1
-        int flD = 1; if (flP < 0) {flD=-1;}
-        int frD = 1; if (frP < 0) {frD=-1;}
-        int blD = 1; if (blP < 0) {blD=-1;}
-        int brD = 1; if (brP < 0) {brD=-1;}
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
+    }
 
+    public MecanumDrive variableGoDist(double runningDistance, double power) {
+        return waitFor("variableGoDist", variableGoDistAsync(runningDistance, power));
+    }
 
-        this.variableRunToPosition((int) (flD * runningDistance * TICKS_PER_INCH),
-                (int) (frD * runningDistance * TICKS_PER_INCH),
-                (int) (blD * runningDistance * TICKS_PER_INCH),
-                (int) (brD * runningDistance * TICKS_PER_INCH),
+    public DriveMotion variableGoDistAsync(double runningDistance, double power) {
+        return this.variableRunToPositionAsync(ticksFor(flP, runningDistance),
+                ticksFor(frP, runningDistance),
+                ticksFor(blP, runningDistance),
+                ticksFor(brP, runningDistance),
                 power);
-
-        return this;
     }
 
     public MecanumDrive goDist(double runningDistance) {
-
-
-
-        // clip the powers to -1 and 1
-        int flD = 1; if (flP < 0) {flD=-1;}
-        int frD = 1; if (frP < 0) {frD=-1;}
-        int blD = 1; if (blP < 0) {blD=-1;}
-        int brD = 1; if (brP < 0) {brD=-1;}
-
-
-        this.runToPosition((int) (flD * runningDistance * TICKS_PER_INCH),
-                (int) (frD * runningDistance * TICKS_PER_INCH),
-                (int) (blD * runningDistance * TICKS_PER_INCH),
-                (int) (brD * runningDistance * TICKS_PER_INCH));
-
-        return this;
+        return waitFor("goDist", goDistAsync(runningDistance));
     }
 
-    public MecanumDrive interruptableGoDist(double runningDistance, Rev2mDistanceSensor sensor) {
-
-
-
-        // clip the powers to -1 and 1
-        int flD = 1; if (flP < 0) {flD=-1;}
-        int frD = 1; if (frP < 0) {frD=-1;}
-        int blD = 1; if (blP < 0) {blD=-1;}
-        int brD = 1; if (brP < 0) {brD=-1;}
+    public DriveMotion goDistAsync(double runningDistance) {
+        return this.profiledRunToPositionAsync(ticksFor(flP, runningDistance),
+                ticksFor(frP, runningDistance),
+                ticksFor(blP, runningDistance),
+                ticksFor(brP, runningDistance),
+                speed);
+    }
 
+    public MecanumDrive interruptableGoDist(double runningDistance, DistanceSampler sensor) {
+        return waitFor("interruptableGoDist", interruptableGoDistAsync(runningDistance, sensor));
+    }
 
-        this.interruptableGoTarget((int) (flD * runningDistance * TICKS_PER_INCH),
-                (int) (frD * runningDistance * TICKS_PER_INCH),
-                (int) (blD * runningDistance * TICKS_PER_INCH),
-                (int) (brD * runningDistance * TICKS_PER_INCH),
+    public DriveMotion interruptableGoDistAsync(double runningDistance, DistanceSampler sensor) {
+        return this.interruptableGoTargetAsync(ticksFor(flP, runningDistance),
+                ticksFor(frP, runningDistance),
+                ticksFor(blP, runningDistance),
+                ticksFor(brP, runningDistance),
                 sensor);
-
-        return this;
     }
 
-    public MecanumDrive interruptableGoTarget(int LF, int RF, int LB, int RB, Rev2mDistanceSensor sensor) {
-
-        this.leftFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-
-        this.leftBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.leftFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-
-
-        double p = .1;
-        this.leftFront.setPower(p);
-        this.rightFront.setPower(p);
-        this.leftBack.setPower(p);
-        this.rightBack.setPower(p);
-
-        this.leftFront.setTargetPosition(LF);
-        this.rightFront.setTargetPosition(RF);
-        this.leftBack.setTargetPosition(LB);
-        this.rightBack.setTargetPosition(RB);
-
-        this.leftFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-
-
-        //while (leftFront.isBusy() || rightFront.isBusy() || leftBack.isBusy() || rightBack.isBusy()) {}
-        while (true) {
-
-            if (sensor.getDistance(DistanceUnit.CM) < 10) {
-
-                int lb = leftBack.getCurrentPosition();
-                int rb = rightBack.getCurrentPosition();
-                int lf = leftFront.getCurrentPosition();
-                int rf = rightFront.getCurrentPosition();
+    // each wheel travels the full distance in the direction it was last told to spin
+    private int ticksFor(double wheelPower, double runningDistance) {
+        int direction = 1; if (wheelPower < 0) {direction = -1;}
+        return (int) (direction * runningDistance * ticksPerInch);
+    }
 
+    public MecanumDrive interruptableGoTarget(int LF, int RF, int LB, int RB, DistanceSampler sensor) {
+        return waitFor("interruptableGoTarget", interruptableGoTargetAsync(LF, RF, LB, RB, sensor));
+    }
 
+    public DriveMotion interruptableGoTargetAsync(final int LF, final int RF, final int LB, final int RB, final DistanceSampler sensor) {
+        return new DriveMotion() {
+            private boolean holding = false;
 
-                leftBack.setTargetPosition(lb);
-                rightBack.setTargetPosition(rb);
-                leftFront.setTargetPosition(lf);
-                rightFront.setTargetPosition(rf);
+            @Override
+            protected void start() {
+                modes.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+                startRelativeMove(LF, RF, LB, RB);
 
-                waitForTargetPosition();
-                break;
+                double p = .1;
+                setPowers(p, p, p, p);
             }
-            if (Math.abs(leftFront.getTargetPosition()  - leftFront.getCurrentPosition()) < 10)  { break; }
-            if (Math.abs(rightFront.getTargetPosition() - rightFront.getCurrentPosition()) < 10) { break; }
-            if (Math.abs(leftBack.getTargetPosition()   - leftBack.getCurrentPosition()) < 10)   { break; }
-            if (Math.abs(rightBack.getTargetPosition()  - rightBack.getCurrentPosition()) < 10)  { break; }
-        }
-
-        this.leftFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
 
-        this.leftBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.leftFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
+            @Override
+            protected boolean step() {
+                readState();
+
+                if (!holding) {
+                    // closing speed along the move, in cm/s
+                    double closingSpeed = (Math.signum(LF) * state.velocity[DriveStateSnapshot.LEFT_FRONT]
+                            + Math.signum(RF) * state.velocity[DriveStateSnapshot.RIGHT_FRONT]
+                            + Math.signum(LB) * state.velocity[DriveStateSnapshot.LEFT_BACK]
+                            + Math.signum(RB) * state.velocity[DriveStateSnapshot.RIGHT_BACK]) / 4 / ticksPerInch * 2.54;
+                    double distance = sensor.getPredicted(closingSpeed);
+                    // how far we'll still roll after deciding to stop
+                    double lead = closingSpeed * stopReactionTime + closingSpeed * closingSpeed / (2 * stopDeceleration);
+
+                    // NaN when the sensor has seen nothing lately, keep going
+                    if (!Double.isNaN(distance) && distance - lead < stopDistanceCm) {
+                        // end the move at the stop distance rather than wherever the wheels are now
+                        int remaining = (int) (Math.max(0, distance - stopDistanceCm) / 2.54 * ticksPerInch);
+                        setTargetPositions(stopTarget(DriveStateSnapshot.LEFT_FRONT, LF, remaining),
+                                stopTarget(DriveStateSnapshot.RIGHT_FRONT, RF, remaining),
+                                stopTarget(DriveStateSnapshot.LEFT_BACK, LB, remaining),
+                                stopTarget(DriveStateSnapshot.RIGHT_BACK, RB, remaining));
+                        holding = true;
+                    }
+                }
+                return state.anyWithin(10);
+            }
 
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
+    }
 
-        this.off();
-        return this;
+    // remaining ticks further on from where the wheel is, but never past the original move
+    private int stopTarget(int wheel, int offset, int remaining) {
+        int target = state.position[wheel] + (int) Math.signum(offset) * remaining;
+        int end = baseline[wheel] + offset;
+        return offset >= 0 ? Math.min(target, end) : Math.max(target, end);
     }
 
     // support the old API style
     public MecanumDrive runFor(double seconds) {return goFor(seconds);}
     public MecanumDrive runDist(double d) {return goDist(d);}
 
+    // The direction helpers only set the wheel directions for the move that
+    // follows, they don't touch the motors. Starting them here used to switch
+    // to open loop before every encoder move and straight back again.
     public MecanumDrive forward() {
         calculateDirections(0, -1, 0);
-        applyPower();
         return this;
     }
 
     public MecanumDrive backward() {
         calculateDirections(0, 1, 0);
-        applyPower();
         return this;
     }
 
     public MecanumDrive left() {
         calculateDirections(-1, 0, 0);
-        applyPower();
         return this;
     }
 
     public MecanumDrive right() {
         calculateDirections(1, 0, 0);
-        applyPower();
         return this;
     }
 
@@ -392,168 +453,381 @@ public class MecanumDrive {
 
 	// This is a RELATIVE turn to the robots current position. Use if you want : turnAbsolute()
 	public MecanumDrive turn(double degrees) {
-        double tmpTarget = imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES) - degrees;
-
-        // this will stop moving with an acuracy of 2 degrees
-        while (true) {
-            this.calcGyroStabilized(0,0, tmpTarget);
-            this.applyPower();
-
+        return waitFor("turn", turnAsync(degrees));
+    }
 
-            if (Math.abs(tmpTarget - (this.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES))) < .5 && Math.abs(imu.getRobotAngularVelocity(AngleUnit.DEGREES).zRotationRate) < 1) {
-                break;
-            }
-        }
-        return this;
+    public DriveMotion turnAsync(final double degrees) {
+        // positive degrees is clockwise, the controller wants counter clockwise
+        return turnMotion(-degrees, false);
     }
 
 	public MecanumDrive turnAbsolute(double degree) {
-		// this will stop moving with an acuracy of 2 degrees
-		while (Math.abs(degree - (imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES) - gyroModifier)) < 2) { 
-			this.calcGyroStabilized(0,0, degree);
-        	this.applyPower();
-		}
-        return this;
+        return waitFor("turnAbsolute", turnAbsoluteAsync(degree));
 	}
 
+    public DriveMotion turnAbsoluteAsync(final double degree) {
+        return turnMotion(degree, true);
+    }
+
+    private DriveMotion turnMotion(final double degrees, final boolean absolute) {
+        return new DriveMotion() {
+            @Override
+            protected void start() {
+                readState();
+                if (absolute) {
+                    headingController.startAbsolute(heading, degrees, state.timestamp);
+                } else {
+                    headingController.startRelative(heading, degrees, state.timestamp);
+                }
+            }
+
+            @Override
+            protected boolean step() {
+                readState();
+                calculateDirectionsRobotCentric(0, 0, headingController.update(heading, yawRate, state.timestamp));
+                // not applyPower(), speed would scale the profile's feedforward
+                openLoop();
+                driveWheels(flP, frP, blP, brP);
+                return headingController.isSettled();
+            }
+
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
+    }
+
     public void rotateRightEncoder(int degree) {
-        this.runToPosition((int) (degree * 754/90.0), -(int) (degree * 605/90.0), (int) (degree * 605/90.0), -(int) (degree * 724/90.0));
-        //this.runToPosition((int) (degree * ticksPerDegree), -(int) (degree * ticksPerDegree), (int) (degree * ticksPerDegree), -(int) (degree * ticksPerDegree));
+        waitFor("rotateRightEncoder", rotateRightEncoderAsync(degree));
+    }
 
+    public DriveMotion rotateRightEncoderAsync(int degree) {
+        return this.runToPositionAsync((int) (degree * calibration.rotateRight(DriveStateSnapshot.LEFT_FRONT) / 90.0),
+                -(int) (degree * calibration.rotateRight(DriveStateSnapshot.RIGHT_FRONT) / 90.0),
+                (int) (degree * calibration.rotateRight(DriveStateSnapshot.LEFT_BACK) / 90.0),
+                -(int) (degree * calibration.rotateRight(DriveStateSnapshot.RIGHT_BACK) / 90.0));
     }
 
     public void rotateLeftEncoder(int degree) {
-        //this.runToPosition(-(int) (degree * ticksPerDegree), (int) (degree * ticksPerDegree), -(int) (degree * ticksPerDegree), (int) (degree * ticksPerDegree));
-        this.runToPosition(-(int) (degree * 698/90.0), (int) (degree * 629/90.0), -(int) (degree * 611/90.0), (int) (degree * 732/90.0));
+        waitFor("rotateLeftEncoder", rotateLeftEncoderAsync(degree));
     }
 
-    public MecanumDrive runToPosition(int LF, int RF, int LB, int RB) {
-        this.leftFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-
-        this.leftBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.leftFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        this.rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-
-        double p = this.speed;
-        this.leftFront.setPower(p);
-        this.rightFront.setPower(p);
-        this.leftBack.setPower(p);
-        this.rightBack.setPower(p);
-
-        this.leftFront.setTargetPosition(LF);
-        this.rightFront.setTargetPosition(RF);
-        this.leftBack.setTargetPosition(LB);
-        this.rightBack.setTargetPosition(RB);
-
-        this.leftFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-
-        //while (leftFront.isBusy() || rightFront.isBusy() || leftBack.isBusy() || rightBack.isBusy()) {}
-        waitForTargetPosition();
+    public DriveMotion rotateLeftEncoderAsync(int degree) {
+        return this.runToPositionAsync(-(int) (degree * calibration.rotateLeft(DriveStateSnapshot.LEFT_FRONT) / 90.0),
+                (int) (degree * calibration.rotateLeft(DriveStateSnapshot.RIGHT_FRONT) / 90.0),
+                -(int) (degree * calibration.rotateLeft(DriveStateSnapshot.LEFT_BACK) / 90.0),
+                (int) (degree * calibration.rotateLeft(DriveStateSnapshot.RIGHT_BACK) / 90.0));
+    }
 
-        this.leftFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+    // Targets are relative to where the wheels are when the move starts. The
+    // motors are left in RUN_TO_POSITION afterwards and only an open loop
+    // command (goFor, applyPower) switches them back, so back to back encoder
+    // moves cost no mode writes.
+    public MecanumDrive runToPosition(int LF, int RF, int LB, int RB) {
+        return waitFor("runToPosition", runToPositionAsync(LF, RF, LB, RB));
+    }
 
-        this.leftBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.leftFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
-        this.rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
+    public DriveMotion runToPositionAsync(final int LF, final int RF, final int LB, final int RB) {
+        return new DriveMotion() {
+            @Override
+            protected void start() {
+                modes.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+                startRelativeMove(LF, RF, LB, RB);
 
+                double p = speed;
+                setPowers(p, p, p, p);
+            }
 
-        this.off();
-        return this;
+            @Override
+            protected boolean step() {
+                readState();
+                return state.anyWithin(10);
+            }
 
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
     }
-    public MecanumDrive variableRunToPosition(int LF, int RF, int LB, int RB, double power) {
-        this.leftFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-
-        double p = power;
-        this.leftFront.setPower(p);
-        this.rightFront.setPower(p);
-        this.leftBack.setPower(p);
-        this.rightBack.setPower(p);
-
-        this.leftFront.setTargetPosition(LF);
-        this.rightFront.setTargetPosition(RF);
-        this.leftBack.setTargetPosition(LB);
-        this.rightBack.setTargetPosition(RB);
-
-        this.leftFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-
-        //while (leftFront.isBusy() || rightFront.isBusy() || leftBack.isBusy() || rightBack.isBusy()) {}
-        waitForTargetPosition();
-
-        this.leftFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
 
+    public MecanumDrive variableRunToPosition(int LF, int RF, int LB, int RB, double power) {
+        return waitFor("variableRunToPosition", variableRunToPositionAsync(LF, RF, LB, RB, power));
+    }
 
-        p = 0.1;
-        this.leftFront.setPower(p);
-        this.rightFront.setPower(p);
-        this.leftBack.setPower(p);
-        this.rightBack.setPower(p);
+    public DriveMotion variableRunToPositionAsync(int LF, int RF, int LB, int RB, double power) {
+        return profiledRunToPositionAsync(LF, RF, LB, RB, power);
+    }
 
-        this.leftFront.setTargetPosition(LF);
-        this.rightFront.setTargetPosition(RF);
-        this.leftBack.setTargetPosition(LB);
-        this.rightBack.setTargetPosition(RB);
+    // Walks the targets along a motion profile instead of jumping straight to
+    // the end, so the robot eases in and out of the move rather than running
+    // flat out and then creeping back. The hub's RUN_TO_POSITION loop tracks
+    // the moving target, velocityScale scales maxVelocity and caps the power.
+    public DriveMotion profiledRunToPositionAsync(final int LF, final int RF, final int LB, final int RB, final double velocityScale) {
+        return new DriveMotion() {
+            private MotionProfile profile;
+            private double startTime;
+
+            @Override
+            protected void start() {
+                modes.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+                startRelativeMove(0, 0, 0, 0);
+
+                // the wheel with the furthest to go sets the pace for all four
+                double length = Math.max(Math.max(Math.abs(LF), Math.abs(RF)), Math.max(Math.abs(LB), Math.abs(RB))) / ticksPerInch;
+                if (useSCurve) {
+                    profile = MotionProfile.sCurve(length, maxVelocity * velocityScale, maxAcceleration, maxJerk);
+                } else {
+                    profile = MotionProfile.trapezoidal(length, maxVelocity * velocityScale, maxAcceleration);
+                }
+
+                double p = velocityScale;
+                setPowers(p, p, p, p);
+                startTime = runtime.time();
+            }
 
-        this.leftFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+            @Override
+            protected boolean step() {
+                readState();
+                double t = runtime.time() - startTime;
+
+                double fraction = 1;
+                if (profile.distance() > 0) {
+                    fraction = profile.sample(t).position / profile.distance();
+                }
+                setTargetPositions(baseline[DriveStateSnapshot.LEFT_FRONT] + (int) Math.round(LF * fraction),
+                        baseline[DriveStateSnapshot.RIGHT_FRONT] + (int) Math.round(RF * fraction),
+                        baseline[DriveStateSnapshot.LEFT_BACK] + (int) Math.round(LB * fraction),
+                        baseline[DriveStateSnapshot.RIGHT_BACK] + (int) Math.round(RB * fraction));
+
+                return profile.isFinished(t) && state.anyWithin(10);
+            }
 
-        waitForTargetPosition();
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
+    }
 
-        this.leftFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightFront.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.rightBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        this.leftBack.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+    public MecanumDrive followTrajectory(Trajectory trajectory) {
+        return waitFor("followTrajectory", followTrajectoryAsync(trajectory));
+    }
 
-        this.off();
+    // Drives the whole trajectory in one go using the pose estimate. The
+    // profile velocity is fed forward as a stick value (maxVelocity is full
+    // stick) and position and heading error are corrected proportionally.
+    // Not used by any Auto yet, the gains and the pose estimate have not
+    // been tuned on the field, so the Autos still drive step by step.
+    public DriveMotion followTrajectoryAsync(final Trajectory trajectory) {
+        return new DriveMotion() {
+            private double startTime;
+
+            @Override
+            protected void start() {
+                startTime = runtime.time();
+            }
 
-        return this;
+            @Override
+            protected boolean step() {
+                readState();
+                Pose pose = getPose();
+                double t = runtime.time() - startTime;
+                trajectory.sample(t);
+
+                double errorX = trajectory.x - pose.x;
+                double errorY = trajectory.y - pose.y;
+                if (t >= trajectory.duration() && (Math.hypot(errorX, errorY) < 1 || t > trajectory.duration() + 0.5)) {
+                    return true;
+                }
+
+                // field velocity to robot frame
+                double fieldX = trajectory.velocityX + trajectoryKp * errorX;
+                double fieldY = trajectory.velocityY + trajectoryKp * errorY;
+                double cos = Math.cos(pose.heading);
+                double sin = Math.sin(pose.heading);
+                double forward = fieldX * cos + fieldY * sin;
+                double left = -fieldX * sin + fieldY * cos;
+
+                double headingError = trajectory.heading - pose.heading;
+                while (headingError > Math.PI) headingError -= 2 * Math.PI;
+                while (headingError < -Math.PI) headingError += 2 * Math.PI;
+
+                // stick convention: x is right, negative y is forward, positive turn is clockwise
+                calculateDirectionsRobotCentric(-left / maxVelocity, -forward / maxVelocity, -trajectoryHeadingKp * headingError);
+                openLoop();
+                driveWheels(flP, frP, blP, brP);
+                return false;
+            }
 
+            @Override
+            protected void end(boolean cancelled) {
+                off();
+            }
+        };
     }
 
     public void recordPosition() {
-        recordedLeftBackPos = this.leftBack.getCurrentPosition();
-        recordedRightBackPos = this.rightBack.getCurrentPosition();
-        recordedLeftFrontPos = this.leftFront.getCurrentPosition();
-        recordedRightFrontPos = this.rightFront.getCurrentPosition();
+        readState();
+        recordedLeftBackPos = state.position[DriveStateSnapshot.LEFT_BACK];
+        recordedRightBackPos = state.position[DriveStateSnapshot.RIGHT_BACK];
+        recordedLeftFrontPos = state.position[DriveStateSnapshot.LEFT_FRONT];
+        recordedRightFrontPos = state.position[DriveStateSnapshot.RIGHT_FRONT];
     }
 
     public void restorePosition() {
-        leftBack.setTargetPosition(recordedLeftBackPos);
-        rightBack.setTargetPosition(recordedRightBackPos);
-        leftFront.setTargetPosition(recordedLeftFrontPos);
-        rightFront.setTargetPosition(recordedRightFrontPos);
+        setTargetPositions(recordedLeftFrontPos, recordedRightFrontPos, recordedLeftBackPos, recordedRightBackPos);
         waitForTargetPosition();
     }
 
     public void waitForTargetPosition() {
-        while (true) {
-            if (Math.abs(leftFront.getTargetPosition()-leftFront.getCurrentPosition()) < 10) {break;}
-            if (Math.abs(rightFront.getTargetPosition()-rightFront.getCurrentPosition()) < 10) {break;}
-            if (Math.abs(leftBack.getTargetPosition()-leftBack.getCurrentPosition()) < 10) {break;}
-            if (Math.abs(rightBack.getTargetPosition()-rightBack.getCurrentPosition()) < 10) {break;}
+        waitFor("waitForTargetPosition", waitForTargetPositionAsync());
+    }
+
+    public DriveMotion waitForTargetPositionAsync() {
+        return new DriveMotion() {
+            @Override
+            protected boolean step() {
+                readState();
+                return state.anyWithin(10);
+            }
+        };
+    }
+
+    // run a motion to completion on this thread, this is all the blocking API does
+    public MecanumDrive waitFor(DriveMotion motion) {
+        return waitFor("move", motion);
+    }
+
+    // the same, logging the loop times of the move under name
+    public MecanumDrive waitFor(String name, DriveMotion motion) {
+        moveLoop.reset();
+        while (!motion.update()) {
+            timers.poll();
+            moveLoop.lap();
+        }
+        RobotLog.ii("MecanumDrive", "%s: %s", name, moveLoop);
+        return this;
+    }
+
+    // refresh the bulk read, use this once at the top of an OpMode loop
+    //     the pose estimate moves forward with every bulk read
+    public DriveStateSnapshot readState() {
+        state.update();
+        ImuSample imuSample = imuSampler.get();
+        heading = imuSample.heading;
+        yaw = imuSample.yaw;
+        yawRate = imuSample.yawRate;
+        poseEstimator.update(state, Math.toRadians(heading));
+        return state;
+    }
+
+    public Pose getPose() {
+        return poseEstimator.getPose();
+    }
+
+    // anchor the pose estimate here, heading in degrees counter clockwise
+    public MecanumDrive setPose(double x, double y, double heading) {
+        readState();
+        poseEstimator.setPose(x, y, Math.toRadians(heading));
+        return this;
+    }
+
+    private void startRelativeMove(int LF, int RF, int LB, int RB) {
+        readState();
+        System.arraycopy(state.position, 0, baseline, 0, 4);
+
+        setTargetPositions(baseline[DriveStateSnapshot.LEFT_FRONT] + LF,
+                baseline[DriveStateSnapshot.RIGHT_FRONT] + RF,
+                baseline[DriveStateSnapshot.LEFT_BACK] + LB,
+                baseline[DriveStateSnapshot.RIGHT_BACK] + RB);
+        modes.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+    }
+
+    private void openLoop() {
+        modes.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        modes.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
+    }
+
+    // raw wheel powers, no kinematics and no velocity control, for characterization
+    public MecanumDrive setWheelPowers(double LF, double RF, double LB, double RB) {
+        openLoop();
+        setPowers(LF, RF, LB, RB);
+        return this;
+    }
+
+    // kS / kV / kA written by DriveFeedforwardFitter, the defaults stay if it's missing
+    private void loadFeedforward(File file) {
+        if (!file.exists()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            double kS = Double.parseDouble(properties.getProperty("kS"));
+            double kV = Double.parseDouble(properties.getProperty("kV"));
+            double kA = Double.parseDouble(properties.getProperty("kA"));
+
+            for (WheelVelocityController controller : wheelControllers) {
+                controller.kS = kS;
+                controller.kV = kV;
+                controller.kA = kA;
+            }
+            if (kV > 0) {
+                maxWheelVelocity = (12.0 - kS) / kV;
+            }
+            RobotLog.ii("MecanumDrive", "feedforward kS %.3f kV %.5f kA %.5f", kS, kV, kA);
+        } catch (IOException | RuntimeException e) {
+            RobotLog.ww("MecanumDrive", "could not load %s: %s", file.getName(), e.toString());
+        }
+    }
+
+    // open loop powers straight to the motors, or through the velocity
+    // controllers using the last snapshot when velocityControl is on
+    private void driveWheels(double LF, double RF, double LB, double RB) {
+        if (!velocityControl) {
+            setPowers(LF, RF, LB, RB);
+            return;
         }
+
+        double dt = lastControlTimestamp == 0 ? 0 : (state.timestamp - lastControlTimestamp) / 1e9;
+        lastControlTimestamp = state.timestamp;
+
+        setPowers(wheelPower(DriveStateSnapshot.LEFT_FRONT, LF, dt),
+                wheelPower(DriveStateSnapshot.RIGHT_FRONT, RF, dt),
+                wheelPower(DriveStateSnapshot.LEFT_BACK, LB, dt),
+                wheelPower(DriveStateSnapshot.RIGHT_BACK, RB, dt));
+    }
+
+    private double wheelPower(int wheel, double power, double dt) {
+        double target = power * maxWheelVelocity;
+        double acceleration = dt > 0 ? (target - lastWheelTarget[wheel]) / dt : 0;
+        lastWheelTarget[wheel] = target;
+
+        double volts = wheelControllers[wheel].calculate(target, acceleration, state.velocity[wheel], dt);
+        return Math.max(-1, Math.min(1, volts / state.batteryVoltage));
+    }
+
+    // all drive writes go through the command cache so repeated values are dropped
+    private void setPowers(double LF, double RF, double LB, double RB) {
+        this.power[DriveStateSnapshot.LEFT_FRONT].set(LF);
+        this.power[DriveStateSnapshot.RIGHT_FRONT].set(RF);
+        this.power[DriveStateSnapshot.LEFT_BACK].set(LB);
+        this.power[DriveStateSnapshot.RIGHT_BACK].set(RB);
+    }
+
+    private void setTargetPositions(int LF, int RF, int LB, int RB) {
+        this.target[DriveStateSnapshot.LEFT_FRONT].set(LF);
+        this.target[DriveStateSnapshot.RIGHT_FRONT].set(RF);
+        this.target[DriveStateSnapshot.LEFT_BACK].set(LB);
+        this.target[DriveStateSnapshot.RIGHT_BACK].set(RB);
+
+        state.setTarget(DriveStateSnapshot.LEFT_FRONT, LF);
+        state.setTarget(DriveStateSnapshot.RIGHT_FRONT, RF);
+        state.setTarget(DriveStateSnapshot.LEFT_BACK, LB);
+        state.setTarget(DriveStateSnapshot.RIGHT_BACK, RB);
     }
 
 
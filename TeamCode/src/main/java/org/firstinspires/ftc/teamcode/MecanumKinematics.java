@@ -0,0 +1,84 @@
+package org.firstinspires.ftc.teamcode;
+
+// Mecanum wheel math for this drivetrain, in both directions
+//     Results are written into public fields instead of new objects so it can
+//     be called every loop without creating garbage.
+//
+//     Sign conventions match the rest of MecanumDrive:
+//         x      strafe, positive is right
+//         y      gamepad style, negative is forward
+//         turn   positive is clockwise
+//         heading / rotation in radians, counter clockwise positive like the IMU yaw
+public class MecanumKinematics {
+
+    private static final double SQRT_HALF = Math.sqrt(0.5);
+
+    private final double ticksPerInch;
+    private final double ticksPerRadian;
+
+    // strafing covers less ground than the wheels turn, 1.0 is an ideal mecanum
+    public double lateralMultiplier = 1.0;
+
+    // inverse kinematics output, wheel powers
+    public double frontLeft;
+    public double frontRight;
+    public double backLeft;
+    public double backRight;
+
+    // forward kinematics output, robot relative
+    public double forward;  // inches
+    public double strafe;   // inches, positive is right
+    public double rotation; // radians, counter clockwise positive
+
+    public MecanumKinematics(double ticksPerInch, double ticksPerRadian) {
+        this.ticksPerInch = ticksPerInch;
+        this.ticksPerRadian = ticksPerRadian;
+    }
+
+    // Same result as the old magnitude * sin(angle +- PI/4) formula, but
+    // hypot * sin(atan2(y, x)) is just y (and cos is x) so no trig is needed
+    public MecanumKinematics inverse(double x, double y, double turn) {
+        double fwd = -y;
+
+        double diagonalA = (fwd + x) * SQRT_HALF; // front left / front right
+        double diagonalB = (fwd - x) * SQRT_HALF; // back left / back right
+
+        frontLeft = diagonalA + turn;
+        frontRight = diagonalA - turn;
+        backLeft = diagonalB + turn;
+        backRight = diagonalB - turn;
+
+        desaturate();
+        return this;
+    }
+
+    // rotate the stick into the robot frame, this is the only trig evaluation
+    public MecanumKinematics inverseFieldCentric(double x, double y, double turn, double heading) {
+        double sin = Math.sin(heading);
+        double cos = Math.cos(heading);
+
+        return inverse(x * cos + y * sin, y * cos - x * sin, turn);
+    }
+
+    // Scale every wheel down together when one is past full power. Clipping
+    // each wheel on its own changes the direction the robot actually drives.
+    private void desaturate() {
+        double max = Math.max(Math.max(Math.abs(frontLeft), Math.abs(frontRight)),
+                Math.max(Math.abs(backLeft), Math.abs(backRight)));
+        if (max > 1.0) {
+            frontLeft /= max;
+            frontRight /= max;
+            backLeft /= max;
+            backRight /= max;
+        }
+    }
+
+    // wheel encoder deltas in ticks to a robot relative twist
+    public MecanumKinematics forward(double dFrontLeft, double dFrontRight, double dBackLeft, double dBackRight) {
+        forward = (dFrontLeft + dFrontRight + dBackLeft + dBackRight) / 4.0 / ticksPerInch;
+        strafe = (dFrontLeft + dFrontRight - dBackLeft - dBackRight) / 4.0 / ticksPerInch * lateralMultiplier;
+        // positive wheel rotation is clockwise, flip it to match the IMU
+        rotation = -(dFrontLeft - dFrontRight + dBackLeft - dBackRight) / 4.0 / ticksPerRadian;
+        return this;
+    }
+}
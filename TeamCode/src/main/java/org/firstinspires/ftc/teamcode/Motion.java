@@ -0,0 +1,16 @@
+package org.firstinspires.ftc.teamcode;
+
+// Something that is moving and is advanced one loop at a time
+//     Drive moves, lift moves and anything else that takes more than one loop
+//     hand one of these back instead of blocking, so the OpMode can run
+//     several at once and decide itself when to wait.
+public interface Motion {
+
+    // advance by one loop, returns true once finished (same as isDone())
+    boolean update();
+
+    boolean isDone();
+
+    // stop where it is, safe to call more than once or after it's done
+    void cancel();
+}
@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode;
+
+// A rest to rest move of a given distance, planned once and sampled by time
+//     The profile is a handful of constant jerk segments (3 for a trapezoid,
+//     up to 7 for an S-curve). Their start times and start states are worked
+//     out when the profile is built, so sample() only has to find the segment
+//     and evaluate one polynomial, no integration and no allocation.
+//
+//     Units are whatever you plan in, inches for the drive, ticks for the lift
+//     and degrees for turns all work. Negative distances move backwards.
+public class MotionProfile {
+
+    private static final int MAX_SEGMENTS = 7;
+
+    private final double[] startTime = new double[MAX_SEGMENTS + 1];
+    private final double[] startPosition = new double[MAX_SEGMENTS];
+    private final double[] startVelocity = new double[MAX_SEGMENTS];
+    private final double[] startAcceleration = new double[MAX_SEGMENTS];
+    private final double[] jerk = new double[MAX_SEGMENTS];
+    private int segments = 0;
+
+    private final double distance;
+    private final double sign;
+
+    // written by sample()
+    public double position;
+    public double velocity;
+    public double acceleration;
+
+    private MotionProfile(double distance) {
+        this.distance = distance;
+        this.sign = distance < 0 ? -1 : 1;
+    }
+
+    // constant acceleration up to maxVelocity, cruise, constant deceleration
+    public static MotionProfile trapezoidal(double distance, double maxVelocity, double maxAcceleration) {
+        MotionProfile profile = new MotionProfile(distance);
+        double d = Math.abs(distance);
+
+        // a triangle if there isn't room to reach full speed
+        double peak = Math.min(maxVelocity, Math.sqrt(d * maxAcceleration));
+        double accelTime = peak / maxAcceleration;
+        double cruiseTime = peak > 0 ? (d - peak * accelTime) / peak : 0;
+
+        profile.add(accelTime, maxAcceleration, 0);
+        profile.add(cruiseTime, 0, 0);
+        profile.add(accelTime, -maxAcceleration, 0);
+        return profile;
+    }
+
+    // Jerk limited: acceleration ramps in and out instead of stepping, which
+    // is what stops the wheels slipping at the start and the end of a move
+    public static MotionProfile sCurve(double distance, double maxVelocity, double maxAcceleration, double maxJerk) {
+        MotionProfile profile = new MotionProfile(distance);
+        double d = Math.abs(distance);
+
+        // highest cruise speed that still leaves room to stop
+        double peak = maxVelocity;
+        if (rampDistance(peak, maxAcceleration, maxJerk) > d) {
+            double low = 0;
+            double high = maxVelocity;
+            for (int i = 0; i < 50; i++) {
+                double mid = (low + high) / 2;
+                if (rampDistance(mid, maxAcceleration, maxJerk) > d) {
+                    high = mid;
+                } else {
+                    low = mid;
+                }
+            }
+            peak = low;
+        }
+
+        double jerkTime = jerkTime(peak, maxAcceleration, maxJerk);
+        double constantTime = peak > 0 ? peak / (maxJerk * jerkTime) - jerkTime : 0;
+        double cruiseTime = peak > 0 ? (d - rampDistance(peak, maxAcceleration, maxJerk)) / peak : 0;
+
+        profile.add(jerkTime, 0, maxJerk);
+        profile.add(constantTime, Double.NaN, 0);
+        profile.add(jerkTime, Double.NaN, -maxJerk);
+        profile.add(cruiseTime, 0, 0);
+        profile.add(jerkTime, 0, -maxJerk);
+        profile.add(constantTime, Double.NaN, 0);
+        profile.add(jerkTime, Double.NaN, maxJerk);
+        return profile;
+    }
+
+    // time spent ramping acceleration in (or out) when speeding up to peak
+    private static double jerkTime(double peak, double maxAcceleration, double maxJerk) {
+        return Math.min(maxAcceleration / maxJerk, Math.sqrt(peak / maxJerk));
+    }
+
+    // distance used to speed up to peak and slow back down again
+    private static double rampDistance(double peak, double maxAcceleration, double maxJerk) {
+        if (peak <= 0) {
+            return 0;
+        }
+        double jerkTime = jerkTime(peak, maxAcceleration, maxJerk);
+        double rampTime = peak / (maxJerk * jerkTime) + jerkTime;
+        return peak * rampTime;
+    }
+
+    // acceleration NaN means carry on from the end of the previous segment
+    private void add(double duration, double accel, double segmentJerk) {
+        if (duration <= 1e-9) {
+            return;
+        }
+
+        double p = 0;
+        double v = 0;
+        double a = 0;
+        if (segments > 0) {
+            int last = segments - 1;
+            double dt = startTime[segments] - startTime[last];
+            p = positionAt(last, dt);
+            v = velocityAt(last, dt);
+            a = accelerationAt(last, dt);
+        }
+        if (!Double.isNaN(accel)) {
+            a = accel;
+        }
+
+        startPosition[segments] = p;
+        startVelocity[segments] = v;
+        startAcceleration[segments] = a;
+        jerk[segments] = segmentJerk;
+        startTime[segments + 1] = startTime[segments] + duration;
+        segments++;
+    }
+
+    private double positionAt(int i, double dt) {
+        return startPosition[i] + dt * (startVelocity[i] + dt * (startAcceleration[i] / 2 + dt * jerk[i] / 6));
+    }
+
+    private double velocityAt(int i, double dt) {
+        return startVelocity[i] + dt * (startAcceleration[i] + dt * jerk[i] / 2);
+    }
+
+    private double accelerationAt(int i, double dt) {
+        return startAcceleration[i] + dt * jerk[i];
+    }
+
+    // fills position, velocity and acceleration for t seconds into the move
+    public MotionProfile sample(double t) {
+        if (segments == 0 || t >= startTime[segments]) {
+            position = distance;
+            velocity = 0;
+            acceleration = 0;
+            return this;
+        }
+        if (t < 0) {
+            t = 0;
+        }
+
+        int i = 0;
+        while (t >= startTime[i + 1]) {
+            i++;
+        }
+        double dt = t - startTime[i];
+
+        position = sign * positionAt(i, dt);
+        velocity = sign * velocityAt(i, dt);
+        acceleration = sign * accelerationAt(i, dt);
+        return this;
+    }
+
+    public double duration() {
+        return startTime[segments];
+    }
+
+    public double distance() {
+        return distance;
+    }
+
+    public boolean isFinished(double t) {
+        return t >= duration();
+    }
+}
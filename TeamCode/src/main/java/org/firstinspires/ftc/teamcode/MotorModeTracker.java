@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+// Tracks the run mode and zero power behaviour we last gave a group of motors
+//     so that asking for the mode they are already in costs nothing. Mode
+//     changes are hub transactions like any other write, and the drive used
+//     to spend 20+ of them on every move.
+public class MotorModeTracker {
+    private final DcMotor[] motors;
+    private final DcMotor.RunMode[] modes;
+    private final DcMotor.ZeroPowerBehavior[] zeroPower;
+
+    private long skipped = 0;
+
+    public MotorModeTracker(DcMotor... motors) {
+        this.motors = motors;
+        // null means unknown, so the first request is always written
+        this.modes = new DcMotor.RunMode[motors.length];
+        this.zeroPower = new DcMotor.ZeroPowerBehavior[motors.length];
+    }
+
+    public void setMode(DcMotor.RunMode mode) {
+        for (int i = 0; i < motors.length; i++) {
+            setMode(i, mode);
+        }
+    }
+
+    public void setMode(int motor, DcMotor.RunMode mode) {
+        // a reset always has to go out, it is an action and not a state
+        if (modes[motor] == mode && mode != DcMotor.RunMode.STOP_AND_RESET_ENCODER) {
+            skipped++;
+            return;
+        }
+        motors[motor].setMode(mode);
+        modes[motor] = mode;
+    }
+
+    public void setZeroPowerBehavior(DcMotor.ZeroPowerBehavior behavior) {
+        for (int i = 0; i < motors.length; i++) {
+            if (zeroPower[i] == behavior) {
+                skipped++;
+                continue;
+            }
+            motors[i].setZeroPowerBehavior(behavior);
+            zeroPower[i] = behavior;
+        }
+    }
+
+    public DcMotor.RunMode getMode(int motor) {
+        return modes[motor];
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+}
@@ -9,7 +9,9 @@ package org.firstinspires.ftc.teamcode;
 
 // This is a Proportional Derivative Controller
 //     It takes a some constants and a target and outputs
-//     values to reach that target
+//     values to reach that target. The derivative is passed in rather than
+//     worked out from the last error, because the sensors we use it with
+//     (IMU rate, encoder velocity) measure it directly and with less noise.
 public class PDController {
 
     double u;  // Force
@@ -18,6 +20,10 @@ public class PDController {
     double Kp; // Proportional Gain Constant (Driving force thing)
     double Kd; // Derivative Gain Constant (damper force thing)
 
+    // output clamp, unbounded unless set
+    double minOutput = Double.NEGATIVE_INFINITY;
+    double maxOutput = Double.POSITIVE_INFINITY;
+
     public PDController(double Kp, double Kd, double target) {
         // Constants for PD control
         this.Kp = Kp;
@@ -27,13 +33,50 @@ public class PDController {
         this.target = target;
     }
 
+    public PDController(double Kp, double Kd) {
+        this(Kp, Kd, 0);
+    }
+
+    public PDController setTarget(double target) {
+        this.target = target;
+        return this;
+    }
+
+    public double getTarget() {
+        return target;
+    }
+
+    public PDController setGains(double Kp, double Kd) {
+        this.Kp = Kp;
+        this.Kd = Kd;
+        return this;
+    }
+
+    public PDController setOutputLimits(double min, double max) {
+        this.minOutput = min;
+        this.maxOutput = max;
+        return this;
+    }
+
     public double update(double data, double derivative) {
+        return calculate(this.target - data, derivative);
+    }
 
-        double error = this.target - data;
+    // target moving at targetRate, measured moving at rate
+    public double update(double data, double rate, double targetRate) {
+        return calculate(this.target - data, targetRate - rate);
+    }
 
+    // for errors the caller has to work out itself, e.g. wrapped angles
+    public double calculate(double error, double errorRate) {
         this.u = (this.Kp * error)  // Proportional Controller
-                + (this.Kd * derivative); // Derivative Controller
+                + (this.Kd * errorRate); // Derivative Controller
 
+        this.u = Math.max(minOutput, Math.min(maxOutput, this.u));
         return this.u;
     }
+
+    public double getOutput() {
+        return u;
+    }
 }
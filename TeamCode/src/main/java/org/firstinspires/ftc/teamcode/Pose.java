@@ -0,0 +1,30 @@
+package org.firstinspires.ftc.teamcode;
+
+// Where the robot is on the field at one instant
+//     Immutable, so it can be handed between threads without locking.
+//     x is forward and y is left of where the robot started, in inches.
+//     heading is in radians, counter clockwise positive like the IMU yaw.
+public final class Pose {
+    public final double x;
+    public final double y;
+    public final double heading;
+
+    // System.nanoTime() of the reading this pose came from
+    public final long timestamp;
+
+    public Pose(double x, double y, double heading, long timestamp) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.timestamp = timestamp;
+    }
+
+    public Pose(double x, double y, double heading) {
+        this(x, y, heading, System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.1f, %.1f) %.1f deg", x, y, Math.toDegrees(heading));
+    }
+}
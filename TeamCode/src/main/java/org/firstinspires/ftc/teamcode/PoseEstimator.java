@@ -0,0 +1,87 @@
+package org.firstinspires.ftc.teamcode;
+
+// Dead reckoning from the drive encoders with the heading taken from the IMU
+//     update() is called once per bulk read with the fresh snapshot. The wheel
+//     deltas since the last update go through forward kinematics to get how far
+//     the robot moved in its own frame, which is then rotated onto the field
+//     using the average heading over the step.
+//
+//     The latest pose is published through a volatile field so the OpMode,
+//     telemetry or any other thread can read it without taking a lock.
+public class PoseEstimator {
+
+    private final MecanumKinematics kinematics;
+
+    private final int[] lastPosition = new int[4];
+    private boolean initialized = false;
+
+    private double lastHeading;
+    private double headingOffset = 0;
+    private double lastImuHeading = 0;
+
+    private volatile Pose pose = new Pose(0, 0, 0, 0);
+
+    public PoseEstimator(double ticksPerInch, double ticksPerRadian) {
+        this.kinematics = new MecanumKinematics(ticksPerInch, ticksPerRadian);
+    }
+
+    // imuHeading is the raw IMU yaw in radians
+    public Pose update(DriveStateSnapshot state, double imuHeading) {
+        lastImuHeading = imuHeading;
+        double heading = imuHeading + headingOffset;
+
+        if (!initialized) {
+            System.arraycopy(state.position, 0, lastPosition, 0, 4);
+            lastHeading = heading;
+            initialized = true;
+            pose = new Pose(pose.x, pose.y, heading, state.timestamp);
+            return pose;
+        }
+
+        kinematics.forward(
+                state.position[DriveStateSnapshot.LEFT_FRONT] - lastPosition[DriveStateSnapshot.LEFT_FRONT],
+                state.position[DriveStateSnapshot.RIGHT_FRONT] - lastPosition[DriveStateSnapshot.RIGHT_FRONT],
+                state.position[DriveStateSnapshot.LEFT_BACK] - lastPosition[DriveStateSnapshot.LEFT_BACK],
+                state.position[DriveStateSnapshot.RIGHT_BACK] - lastPosition[DriveStateSnapshot.RIGHT_BACK]);
+        System.arraycopy(state.position, 0, lastPosition, 0, 4);
+
+        // integrate along the heading half way through the step
+        double midHeading = lastHeading + wrap(heading - lastHeading) / 2;
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+        double left = -kinematics.strafe;
+
+        Pose last = pose;
+        pose = new Pose(
+                last.x + kinematics.forward * cos - left * sin,
+                last.y + kinematics.forward * sin + left * cos,
+                heading,
+                state.timestamp);
+
+        lastHeading = heading;
+        return pose;
+    }
+
+    public Pose getPose() {
+        return pose;
+    }
+
+    // Tell the estimator where the robot really is. The next update() will
+    // continue from here, imuHeading is the raw IMU yaw at this moment.
+    public void setPose(double x, double y, double heading, double imuHeading) {
+        headingOffset = heading - imuHeading;
+        lastHeading = heading;
+        pose = new Pose(x, y, heading);
+    }
+
+    // the same, against the IMU reading from the last update()
+    public void setPose(double x, double y, double heading) {
+        setPose(x, y, heading, lastImuHeading);
+    }
+
+    private static double wrap(double radians) {
+        while (radians > Math.PI) radians -= 2 * Math.PI;
+        while (radians < -Math.PI) radians += 2 * Math.PI;
+        return radians;
+    }
+}
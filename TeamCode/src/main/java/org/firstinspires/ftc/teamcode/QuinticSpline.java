@@ -0,0 +1,60 @@
+package org.firstinspires.ftc.teamcode;
+
+// One piece of a trajectory, a quintic polynomial in x and in y over u = 0..1
+//     Both ends take a position, first and second derivative, so neighbouring
+//     pieces can be joined without a corner. TrajectoryBuilder only matches
+//     position and tangent and passes 0 for the second derivative, so the
+//     curvature is continuous only because it is zero at every waypoint: the
+//     path straightens out briefly through each one.
+public class QuinticSpline {
+
+    // c0 + c1 u + c2 u^2 + ... + c5 u^5
+    final double[] x;
+    final double[] y;
+
+    // endpoints with their first and second derivatives with respect to u
+    public QuinticSpline(double x0, double dx0, double ddx0, double x1, double dx1, double ddx1,
+                         double y0, double dy0, double ddy0, double y1, double dy1, double ddy1) {
+        this(coefficients(x0, dx0, ddx0, x1, dx1, ddx1), coefficients(y0, dy0, ddy0, y1, dy1, ddy1));
+    }
+
+    QuinticSpline(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    private static double[] coefficients(double p0, double v0, double a0, double p1, double v1, double a1) {
+        return new double[] {
+                p0,
+                v0,
+                a0 / 2,
+                -10 * p0 - 6 * v0 - 1.5 * a0 + 0.5 * a1 - 4 * v1 + 10 * p1,
+                15 * p0 + 8 * v0 + 1.5 * a0 - a1 + 7 * v1 - 15 * p1,
+                -6 * p0 - 3 * v0 - 0.5 * a0 + 0.5 * a1 - 3 * v1 + 6 * p1
+        };
+    }
+
+    public double x(double u) {
+        return value(x, u);
+    }
+
+    public double y(double u) {
+        return value(y, u);
+    }
+
+    public double dx(double u) {
+        return derivative(x, u);
+    }
+
+    public double dy(double u) {
+        return derivative(y, u);
+    }
+
+    private static double value(double[] c, double u) {
+        return c[0] + u * (c[1] + u * (c[2] + u * (c[3] + u * (c[4] + u * c[5]))));
+    }
+
+    private static double derivative(double[] c, double u) {
+        return c[1] + u * (2 * c[2] + u * (3 * c[3] + u * (4 * c[4] + u * 5 * c[5])));
+    }
+}
@@ -23,6 +23,8 @@ public class ReadLiftEncoder extends LinearOpMode {
             telemetry.addData("Lift Position", lift.getPosition());
             telemetry.update();
 
+            // up() and down() only move the target, the lift controller does the rest
+            lift.update();
 
             if (gamepad1.dpad_up) {
                 lift.up();
@@ -16,6 +16,7 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.hardware.TouchSensor;
 import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.Supplier;
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
@@ -34,8 +35,19 @@ public class Robot {
     public TouchSensor bumpSensorLeft, bumpSensorRight;
     public Debouncer bumbDebouncer = new Debouncer();
     public Rev2mDistanceSensor poleSensor;
+    // read poleSensor through this, never directly in a loop
+    public DistanceSampler poleSampler;
 
-    final double inchesPerBox = 21.5; // 23.3 for meet; 21.5 for school
+    // shared by the drive, lift and grabber so the counters cover every write
+    public final CommandCache commands = new CommandCache();
+
+    // parks the thread during sleeps and runs periodic tasks meanwhile
+    public final TimerService timers = new TimerService();
+
+    // set by cycle(), null for OpModes that run their own loop
+    public RobotCycle cycle;
+
+    final double inchesPerBox; // from the drive calibration, it depends on the venue
     final double robotLength = 11.75;
     final double robotWidth = 15.25;
     final double robotDistFront  = 8.75;
@@ -43,6 +55,8 @@ public class Robot {
 
 
 	public IMU imu = null;
+    // read the heading from here, not from imu, see ImuSampler
+    public ImuSampler imuSampler;
 
 
     // setup class initializer
@@ -58,14 +72,28 @@ public class Robot {
                         RevHubOrientationOnRobot.UsbFacingDirection.BACKWARD)
         );
         imu.initialize(params);
+        this.imuSampler = new ImuSampler(imu).start();
 
         // Setup Devices
-        this.drive = new MecanumDrive(hardwareMap, runtime, imu);
-        this.lift = new Lift(hardwareMap);
-        this.grabber = new Grabber(hardwareMap);
+        this.drive = new MecanumDrive(hardwareMap, runtime, imu, commands, timers, imuSampler);
+        this.inchesPerBox = drive.calibration.inchesPerBox;
+        this.lift = new Lift(hardwareMap, commands, timers);
+        // keeps the lift controller running through sleeps and blocking drive moves
+        timers.every(0.02, new Runnable() {
+            @Override
+            public void run() {
+                if (cycle != null && cycle.isRunning()) {
+                    return; // the cycle reads and updates the lift itself
+                }
+                drive.state.updateIfOlderThan(0.015);
+                lift.update();
+            }
+        });
+        this.grabber = new Grabber(hardwareMap, commands);
         this.bumpSensorLeft = hardwareMap.get(TouchSensor.class, "bumpLeft");
         this.bumpSensorRight = hardwareMap.get(TouchSensor.class, "bumpRight");
         this.poleSensor = hardwareMap.get(Rev2mDistanceSensor.class, "Pole");
+        this.poleSampler = new DistanceSampler(poleSensor).start();
         //this.isStopRequested = isStopRequested;
 
 
@@ -83,21 +111,30 @@ public class Robot {
         return this;
     }
 
+    // split the OpMode loop into read / compute / write at rate Hz
+    public RobotCycle cycle(double rate) {
+        cycle = new RobotCycle(this, rate);
+        return cycle;
+    }
+
     /*
      * This section is for making autonomous programming simpler
      */
 
     public void sleep(double sleepTime) {
-        double time = runtime.time();
-        double initTime = time;
+        timers.sleep(sleepTime);
+    }
 
-        while (time <= initTime + sleepTime) {
-            time = runtime.time();
+    // wait for anything that moves on its own (grabber, lift) while keeping
+    // the timers, and so the lift controller, running
+    public void waitFor(Motion motion) {
+        while (!motion.update()) {
+            timers.sleep(0.005);
         }
     }
 
     public double getHeading() {
-        return imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES);
+        return imuSampler.get().yaw;
     }
 
     public Orientation getAngles() {
@@ -108,16 +145,104 @@ public class Robot {
         return bumbDebouncer.isPressed(bumpSensorLeft.isPressed() && bumpSensorRight.isPressed());
     }
 
-    public Robot deliver(int poleHeight) {
-        //drive.recordPosition();
-        lift.setPosition(poleHeight);
-        drive.interruptableGoDist(inchesPerBox * 0.25, poleSensor);
-        sleep(0.5);
-        grabber.open();
-        //drive.restorePosition();
-        grabber.close();
-        lift.setPosition(0);
+    // the approach may start this far below the delivery height, the lift
+    // covers it long before the robot reaches the pole
+    public int approachLeadTicks = 100;
+    // lowered onto the pole before letting go
+    public int dropTicks = 220;
+
+    // Finish raising the lift and approach the pole, but only start driving
+    // in once the lift is clear of the pole. Then settle the cone onto it,
+    // let go, back off and start the lift down for the drive to park.
+    public Robot deliver(final int poleHeight) {
+        run("deliver", Action.sequence(
+                Action.parallel(
+                        liftTo(poleHeight),
+                        Action.sequence(
+                                liftAbove(poleHeight - approachLeadTicks),
+                                Action.defer("approach pole", new Supplier<Motion>() {
+                                    @Override
+                                    public Motion get() {
+                                        return drive.forward().interruptableGoDistAsync(inchesPerBox * .3, poleSampler);
+                                    }
+                                }))),
+                Action.sleep(0.25),
+                liftTo(poleHeight - dropTicks),
+                Action.sleep(0.25),
+                openGrabber(),
+                Action.defer("back off", new Supplier<Motion>() {
+                    @Override
+                    public Motion get() {
+                        return drive.backward().goDistAsync(inchesPerBox * .25);
+                    }
+                }),
+                Action.sleep(0.25),
+                Action.instant("lower lift", new Runnable() {
+                    @Override
+                    public void run() {
+                        lift.setPositionAsync(0);
+                    }
+                }),
+                Action.sleep(0.1)));
+
+        return this;
+    }
+
+    // the last routine run(), for telemetry
+    public String lastReport = "";
 
+    // tick action from this thread until it finishes, then log how long each
+    // part took and how much the overlap saved over doing it step by step
+    public Robot run(String name, Action action) {
+        while (!action.update()) {
+            // short park so waiting on the lift or a servo doesn't spin a core,
+            // this also runs the timers
+            timers.sleep(0.001);
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%s: %.2f s, serial %.2f s, overlap saved %.2f s\n",
+                name, action.seconds(), action.serialSeconds(), action.serialSeconds() - action.seconds()));
+        action.report(report, 1);
+        lastReport = report.toString();
+        RobotLog.ii("Robot", "%s", lastReport);
         return this;
     }
+
+    public Action liftTo(final int ticks) {
+        return Action.defer("lift to " + ticks, new Supplier<Motion>() {
+            @Override
+            public Motion get() {
+                return lift.moveTo(ticks);
+            }
+        });
+    }
+
+    // done as soon as the lift is at or above ticks, while it carries on moving
+    public Action liftAbove(final int ticks) {
+        return Action.until("lift above " + ticks, new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return lift.getPosition() >= ticks;
+            }
+        });
+    }
+
+    public Action openGrabber() {
+        return Action.defer("open grabber", new Supplier<Motion>() {
+            @Override
+            public Motion get() {
+                return grabber.open();
+            }
+        });
+    }
+
+    public Action closeGrabber() {
+        return Action.defer("close grabber", new Supplier<Motion>() {
+            @Override
+            public Motion get() {
+                return grabber.close();
+            }
+        });
+    }
 }
\ No newline at end of file
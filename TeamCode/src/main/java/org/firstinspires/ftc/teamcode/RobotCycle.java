@@ -0,0 +1,122 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+// One fixed rate loop iteration split into read, compute and write phases
+//     read()  one bulk read per hub plus the latest IMU sample, see
+//             MecanumDrive.readState(). Everything after it should work
+//             from robot.drive.state and the samplers, not the hardware.
+//     compute whatever the OpMode does with that, the lift controller runs
+//             first. Writes made here are only queued in robot.commands.
+//     write() flush the queued writes, then park until the next period.
+//
+//     Each phase has its own histogram and a period that runs long is counted
+//     as an overrun, the next one then starts straight away instead of trying
+//     to catch up. Blocking helpers (setPosition, goFor, sleep) need their
+//     writes to go out while they wait, so suspend() around them.
+//
+//     while (opModeIsActive()) {
+//         DriveStateSnapshot state = cycle.read();
+//         ...
+//         cycle.write();
+//     }
+public class RobotCycle {
+
+    private final Robot robot;
+    private final long periodNanos;
+
+    private boolean running = false;
+    private long deadline = 0;
+    private long computeStart = 0;
+    private long lastRead = 0;
+    private long overruns = 0;
+
+    public final LoopHistogram readTime = new LoopHistogram("cycle read");
+    public final LoopHistogram computeTime = new LoopHistogram("cycle compute");
+    public final LoopHistogram writeTime = new LoopHistogram("cycle write");
+    public final LoopHistogram period = new LoopHistogram("cycle period");
+
+    public RobotCycle(Robot robot, double rate) {
+        this.robot = robot;
+        this.periodNanos = (long) (1e9 / rate);
+    }
+
+    public RobotCycle start() {
+        robot.commands.setDeferred(true);
+        running = true;
+        deadline = System.nanoTime();
+        return this;
+    }
+
+    public DriveStateSnapshot read() {
+        long start = System.nanoTime();
+        if (lastRead != 0) {
+            period.record(start - lastRead);
+        }
+        lastRead = start;
+        DriveStateSnapshot state = robot.drive.readState();
+        computeStart = System.nanoTime();
+        readTime.record(computeStart - start);
+
+        robot.lift.update();
+        return state;
+    }
+
+    public RobotCycle write() {
+        long start = System.nanoTime();
+        computeTime.record(start - computeStart);
+        robot.commands.flush();
+        long now = System.nanoTime();
+        writeTime.record(now - start);
+
+        deadline += periodNanos;
+        if (now >= deadline) {
+            overruns++;
+            deadline = now;
+            robot.timers.poll();
+        } else {
+            robot.timers.sleep((deadline - now) / 1e9);
+        }
+        return this;
+    }
+
+    // flush and send writes straight away until resume(), the robot's
+    // timers go back to keeping the lift running in the meantime
+    public RobotCycle suspend() {
+        running = false;
+        lastRead = 0; // the gap until resume() isn't a period
+        robot.commands.setDeferred(false);
+        return this;
+    }
+
+    public RobotCycle resume() {
+        return start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public double getPeriodMs() {
+        return periodNanos / 1e6;
+    }
+
+    public void addTo(Telemetry telemetry) {
+        telemetry.addData("Cycle overruns", overruns);
+        readTime.addTo(telemetry);
+        computeTime.addTo(telemetry);
+        writeTime.addTo(telemetry);
+        period.addTo(telemetry);
+    }
+
+    public void log() {
+        readTime.log();
+        computeTime.log();
+        writeTime.log();
+        period.log();
+    }
+}
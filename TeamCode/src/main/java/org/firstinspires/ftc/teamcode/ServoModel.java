@@ -0,0 +1,76 @@
+package org.firstinspires.ftc.teamcode;
+
+// Where a servo is, worked out from what we told it and how fast it turns
+//     A standard servo can't report its position, but it moves at a known
+//     speed, so the time to get from one position to another is just the
+//     angle over the speed. set() starts that clock and isSettled() says
+//     when it has run out, which replaces a fixed sleep after every move.
+//     Positions that haven't changed aren't written (CommandCache) and don't
+//     restart the clock.
+//
+//     secondsPer60 defaults to a datasheet speed, measure the real one (time
+//     a full sweep) and pass it in. Before the first set() the real position
+//     is unknown, so the first move assumes a full sweep; command a known
+//     position during init so that wait is over before it matters.
+public class ServoModel {
+
+    public double rangeDegrees = 180;   // travel for positions 0 to 1
+    public double secondsPer60 = 0.17;  // unloaded speed
+    public double settleMargin = 0.03;  // seconds, for the servo to stop hunting
+
+    private final CommandCache.Channel channel;
+
+    private double from = Double.NaN;
+    private double to = Double.NaN;
+    private long startNanos = 0;
+    private double travelSeconds = 0;
+
+    public ServoModel(CommandCache.Channel channel) {
+        this.channel = channel;
+    }
+
+    public ServoModel(CommandCache.Channel channel, double rangeDegrees, double secondsPer60) {
+        this(channel);
+        this.rangeDegrees = rangeDegrees;
+        this.secondsPer60 = secondsPer60;
+    }
+
+    // returns true if the servo was actually told to move
+    public boolean set(double position) {
+        double current = estimate();
+        if (!channel.set(position)) {
+            return false;
+        }
+
+        double travel = Double.isNaN(current) ? 1 : Math.abs(position - current);
+        from = current;
+        to = position;
+        startNanos = System.nanoTime();
+        travelSeconds = travel * rangeDegrees / 60 * secondsPer60 + settleMargin;
+        return true;
+    }
+
+    // best guess at the current position, NaN before anything was sent
+    public double estimate() {
+        if (Double.isNaN(to) || isSettled()) {
+            return to;
+        }
+        if (Double.isNaN(from)) {
+            return Double.NaN;
+        }
+        double fraction = Math.min(1, elapsed() / travelSeconds);
+        return from + (to - from) * fraction;
+    }
+
+    public boolean isSettled() {
+        return elapsed() >= travelSeconds;
+    }
+
+    public double remainingSeconds() {
+        return Math.max(0, travelSeconds - elapsed());
+    }
+
+    private double elapsed() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
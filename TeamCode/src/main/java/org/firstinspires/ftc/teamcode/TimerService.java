@@ -0,0 +1,116 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+// Sleeps by parking the thread instead of spinning on the clock
+//     Spinning keeps a core at 100% and starves the camera pipeline and the
+//     SDK event loop. While parked we still wake up for any periodic task that
+//     comes due (sensor sampling, telemetry, watchdogs) and record how late
+//     each wakeup was compared to when we asked for it.
+public class TimerService {
+
+    private static class Periodic {
+        final Runnable task;
+        final long periodNanos;
+        long nextNanos;
+
+        Periodic(Runnable task, long periodNanos, long nextNanos) {
+            this.task = task;
+            this.periodNanos = periodNanos;
+            this.nextNanos = nextNanos;
+        }
+    }
+
+    private final ArrayList<Periodic> tasks = new ArrayList<>();
+
+    // wakeup lateness
+    private long wakeups = 0;
+    private long lastLateNanos = 0;
+    private long maxLateNanos = 0;
+    private long totalLateNanos = 0;
+
+    // run task every periodSeconds while this service is sleeping or polled
+    public TimerService every(double periodSeconds, Runnable task) {
+        long period = (long) (periodSeconds * 1e9);
+        tasks.add(new Periodic(task, period, System.nanoTime() + period));
+        return this;
+    }
+
+    public void sleep(double sleepTime) {
+        long deadline = System.nanoTime() + (long) (sleepTime * 1e9);
+
+        while (true) {
+            long now = runDue(System.nanoTime());
+            if (now >= deadline) {
+                return;
+            }
+
+            long wake = Math.min(deadline, nextDue());
+            LockSupport.parkNanos(wake - now);
+            recordWakeup(System.nanoTime() - wake);
+
+            // park returns straight away once interrupted, so don't spin on it
+            // when the OpMode is being stopped
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    // run whatever is due without sleeping, for loops that never call sleep()
+    public void poll() {
+        runDue(System.nanoTime());
+    }
+
+    // returns the time after the tasks have run
+    private long runDue(long now) {
+        for (int i = 0; i < tasks.size(); i++) {
+            Periodic periodic = tasks.get(i);
+            if (now >= periodic.nextNanos) {
+                periodic.task.run();
+                // skip missed periods instead of running them back to back
+                periodic.nextNanos += ((now - periodic.nextNanos) / periodic.periodNanos + 1) * periodic.periodNanos;
+                now = System.nanoTime();
+            }
+        }
+        return now;
+    }
+
+    private long nextDue() {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < tasks.size(); i++) {
+            next = Math.min(next, tasks.get(i).nextNanos);
+        }
+        return next;
+    }
+
+    private void recordWakeup(long lateNanos) {
+        if (lateNanos < 0) {
+            lateNanos = 0; // woken early, e.g. by an interrupt or a spurious unpark
+        }
+        wakeups++;
+        lastLateNanos = lateNanos;
+        maxLateNanos = Math.max(maxLateNanos, lateNanos);
+        totalLateNanos += lateNanos;
+    }
+
+    public long getWakeups() {
+        return wakeups;
+    }
+
+    public double getLastLatenessMs() {
+        return lastLateNanos / 1e6;
+    }
+
+    public double getMaxLatenessMs() {
+        return maxLateNanos / 1e6;
+    }
+
+    public double getAverageLatenessMs() {
+        if (wakeups == 0) {
+            return 0;
+        }
+        return totalLateNanos / 1e6 / wakeups;
+    }
+}
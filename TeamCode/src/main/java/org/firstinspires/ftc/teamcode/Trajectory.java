@@ -0,0 +1,134 @@
+package org.firstinspires.ftc.teamcode;
+
+// A path made of quintic splines with a motion profile along its length
+//     Splines are parameterised by u, not by distance, so the builder measures
+//     each one once and stores a table of (arc length, u). Sampling at loop
+//     rate is then: profile position at t -> binary search the table -> one
+//     polynomial evaluation, with no numerical integration on the hot path.
+//
+//     Coordinates are the PoseEstimator field frame: x forward, y left, inches,
+//     headings in radians counter clockwise.
+public class Trajectory {
+
+    final QuinticSpline[] splines;
+    // robot heading at the start and end of each spline, interpolated along u
+    final double[] startHeading;
+    final double[] endHeading;
+
+    // arc length lookup, param is spline index + u
+    final double[] lutLength;
+    final double[] lutParam;
+
+    public final double maxVelocity;
+    public final double maxAcceleration;
+    public final double maxJerk;
+
+    private final MotionProfile profile;
+
+    // written by sample()
+    public double x;
+    public double y;
+    public double heading;
+    public double velocityX;
+    public double velocityY;
+
+    Trajectory(QuinticSpline[] splines, double[] startHeading, double[] endHeading,
+               double[] lutLength, double[] lutParam,
+               double maxVelocity, double maxAcceleration, double maxJerk) {
+        this.splines = splines;
+        this.startHeading = startHeading;
+        this.endHeading = endHeading;
+        this.lutLength = lutLength;
+        this.lutParam = lutParam;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        this.profile = MotionProfile.sCurve(length(), maxVelocity, maxAcceleration, maxJerk);
+    }
+
+    // Measures every spline by summing short chords. samples per spline keeps
+    // the table small while the chord error stays well under a tenth of an inch.
+    static void buildLookup(QuinticSpline[] splines, int samples, double[] lutLength, double[] lutParam) {
+        double length = 0;
+        double lastX = splines[0].x(0);
+        double lastY = splines[0].y(0);
+        lutLength[0] = 0;
+        lutParam[0] = 0;
+
+        int n = 1;
+        for (int i = 0; i < splines.length; i++) {
+            for (int k = 1; k <= samples; k++) {
+                double u = k / (double) samples;
+                double px = splines[i].x(u);
+                double py = splines[i].y(u);
+                length += Math.hypot(px - lastX, py - lastY);
+                lastX = px;
+                lastY = py;
+
+                lutLength[n] = length;
+                lutParam[n] = i + u;
+                n++;
+            }
+        }
+    }
+
+    // spline index + u for a distance along the path
+    private double paramAt(double s) {
+        if (s <= 0) {
+            return 0;
+        }
+        int last = lutLength.length - 1;
+        if (s >= lutLength[last]) {
+            return lutParam[last];
+        }
+
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (lutLength[mid] <= s) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+
+        double span = lutLength[high] - lutLength[low];
+        double fraction = span > 0 ? (s - lutLength[low]) / span : 0;
+        return lutParam[low] + fraction * (lutParam[high] - lutParam[low]);
+    }
+
+    // fills the target pose and field velocity for t seconds into the trajectory
+    public Trajectory sample(double t) {
+        profile.sample(t);
+
+        double param = paramAt(profile.position);
+        int i = Math.min((int) param, splines.length - 1);
+        double u = param - i;
+        QuinticSpline spline = splines[i];
+
+        x = spline.x(u);
+        y = spline.y(u);
+        heading = startHeading[i] + (endHeading[i] - startHeading[i]) * u;
+
+        double dx = spline.dx(u);
+        double dy = spline.dy(u);
+        double norm = Math.hypot(dx, dy);
+        if (norm > 1e-9) {
+            velocityX = profile.velocity * dx / norm;
+            velocityY = profile.velocity * dy / norm;
+        } else {
+            velocityX = 0;
+            velocityY = 0;
+        }
+        return this;
+    }
+
+    public double length() {
+        return lutLength[lutLength.length - 1];
+    }
+
+    public double duration() {
+        return profile.duration();
+    }
+}
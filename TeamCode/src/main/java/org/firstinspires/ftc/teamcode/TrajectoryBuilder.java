@@ -0,0 +1,88 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.ArrayList;
+
+// Joins waypoints into a Trajectory
+//     new TrajectoryBuilder(new Pose(0, 0, 0))
+//             .splineTo(24, 0, 0)
+//             .splineTo(48, -12, -90)
+//             .build(40, 60, 300);
+//
+//     Tangents are the direction of travel through each waypoint in degrees.
+//     Second derivatives are left at zero, see QuinticSpline.
+//     The robot heading is held unless a waypoint asks for a new one, a
+//     mecanum doesn't have to face the way it drives.
+public class TrajectoryBuilder {
+
+    static final int LOOKUP_SAMPLES = 64;
+
+    private final ArrayList<double[]> waypoints = new ArrayList<>(); // x, y, tangent, heading
+
+    public TrajectoryBuilder(Pose start) {
+        this(start, Math.toDegrees(start.heading));
+    }
+
+    public TrajectoryBuilder(Pose start, double startTangent) {
+        waypoints.add(new double[] {start.x, start.y, Math.toRadians(startTangent), start.heading});
+    }
+
+    public TrajectoryBuilder splineTo(double x, double y, double tangent) {
+        double heading = waypoints.get(waypoints.size() - 1)[3];
+        waypoints.add(new double[] {x, y, Math.toRadians(tangent), heading});
+        return this;
+    }
+
+    public TrajectoryBuilder splineTo(double x, double y, double tangent, double heading) {
+        waypoints.add(new double[] {x, y, Math.toRadians(tangent), Math.toRadians(heading)});
+        return this;
+    }
+
+    // Changes whenever anything that goes into build() changes, the trajectory
+    // cache uses it to spot stale files
+    public long parameterHash(double maxVelocity, double maxAcceleration, double maxJerk) {
+        long hash = 1125899906842597L;
+        for (double[] waypoint : waypoints) {
+            for (double value : waypoint) {
+                hash = 31 * hash + Double.doubleToLongBits(value);
+            }
+        }
+        hash = 31 * hash + Double.doubleToLongBits(maxVelocity);
+        hash = 31 * hash + Double.doubleToLongBits(maxAcceleration);
+        hash = 31 * hash + Double.doubleToLongBits(maxJerk);
+        hash = 31 * hash + LOOKUP_SAMPLES;
+        return hash;
+    }
+
+    public Trajectory build(double maxVelocity, double maxAcceleration, double maxJerk) {
+        int count = waypoints.size() - 1;
+        if (count < 1) {
+            throw new IllegalStateException("a trajectory needs at least one splineTo()");
+        }
+
+        QuinticSpline[] splines = new QuinticSpline[count];
+        double[] startHeading = new double[count];
+        double[] endHeading = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            double[] a = waypoints.get(i);
+            double[] b = waypoints.get(i + 1);
+
+            // scaling the tangents by the chord length keeps the curve from
+            // looping or flattening out when waypoints are far apart
+            double chord = Math.hypot(b[0] - a[0], b[1] - a[1]);
+            splines[i] = new QuinticSpline(
+                    a[0], chord * Math.cos(a[2]), 0, b[0], chord * Math.cos(b[2]), 0,
+                    a[1], chord * Math.sin(a[2]), 0, b[1], chord * Math.sin(b[2]), 0);
+
+            startHeading[i] = a[3];
+            endHeading[i] = b[3];
+        }
+
+        double[] lutLength = new double[count * LOOKUP_SAMPLES + 1];
+        double[] lutParam = new double[count * LOOKUP_SAMPLES + 1];
+        Trajectory.buildLookup(splines, LOOKUP_SAMPLES, lutLength, lutParam);
+
+        return new Trajectory(splines, startHeading, endHeading, lutLength, lutParam,
+                maxVelocity, maxAcceleration, maxJerk);
+    }
+}
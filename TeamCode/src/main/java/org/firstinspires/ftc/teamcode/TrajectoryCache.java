@@ -0,0 +1,161 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Keeps built trajectories on the hub so init doesn't have to rebuild them
+//     Infrastructure only for now, no Auto follows a trajectory yet. The
+//     Trajectory Cache Benchmark OpMode shows what a load saves over a build.
+//     Each routine is one small binary file holding the spline coefficients and
+//     the arc length table. Files are memory mapped on load. The header stores
+//     a hash of everything the trajectory was built from (waypoints, limits and
+//     the file format) so a changed routine is rebuilt and rewritten instead of
+//     being loaded stale.
+public class TrajectoryCache {
+
+    private static final String TAG = "TrajectoryCache";
+    private static final int MAGIC = 0x5452414a; // "TRAJ"
+    private static final int VERSION = 1;
+
+    private final File directory;
+
+    // timings of the last get(), for telemetry and the log
+    public long lastLoadNanos = 0;
+    public long lastBuildNanos = 0;
+    public boolean lastWasHit = false;
+
+    public TrajectoryCache(File directory) {
+        this.directory = directory;
+    }
+
+    public TrajectoryCache() {
+        this(new File(AppUtil.FIRST_FOLDER, "trajectories"));
+    }
+
+    public Trajectory get(String routine, TrajectoryBuilder builder, double maxVelocity, double maxAcceleration, double maxJerk) {
+        long hash = builder.parameterHash(maxVelocity, maxAcceleration, maxJerk) * 31 + VERSION;
+        File file = fileFor(routine);
+
+        long start = System.nanoTime();
+        Trajectory trajectory = load(file, hash);
+        lastLoadNanos = System.nanoTime() - start;
+
+        if (trajectory != null) {
+            lastWasHit = true;
+            lastBuildNanos = 0;
+            RobotLog.ii(TAG, "%s loaded in %.2f ms", routine, lastLoadNanos / 1e6);
+            return trajectory;
+        }
+
+        start = System.nanoTime();
+        trajectory = builder.build(maxVelocity, maxAcceleration, maxJerk);
+        lastBuildNanos = System.nanoTime() - start;
+        lastWasHit = false;
+
+        save(file, hash, trajectory);
+        RobotLog.ii(TAG, "%s rebuilt in %.2f ms (cache miss took %.2f ms)", routine, lastBuildNanos / 1e6, lastLoadNanos / 1e6);
+        return trajectory;
+    }
+
+    public File fileFor(String routine) {
+        return new File(directory, routine + ".traj");
+    }
+
+    private Trajectory load(File file, long hash) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != hash) {
+                return null;
+            }
+
+            double maxVelocity = buffer.getDouble();
+            double maxAcceleration = buffer.getDouble();
+            double maxJerk = buffer.getDouble();
+
+            int count = buffer.getInt();
+            QuinticSpline[] splines = new QuinticSpline[count];
+            double[] startHeading = new double[count];
+            double[] endHeading = new double[count];
+            for (int i = 0; i < count; i++) {
+                splines[i] = new QuinticSpline(readDoubles(buffer, 6), readDoubles(buffer, 6));
+                startHeading[i] = buffer.getDouble();
+                endHeading[i] = buffer.getDouble();
+            }
+
+            int lookup = buffer.getInt();
+            double[] lutLength = readDoubles(buffer, lookup);
+            double[] lutParam = readDoubles(buffer, lookup);
+
+            return new Trajectory(splines, startHeading, endHeading, lutLength, lutParam,
+                    maxVelocity, maxAcceleration, maxJerk);
+        } catch (IOException | RuntimeException e) {
+            // a truncated or corrupt file is just a miss
+            RobotLog.ww(TAG, "could not read %s: %s", file.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private void save(File file, long hash, Trajectory trajectory) {
+        int count = trajectory.splines.length;
+        int lookup = trajectory.lutLength.length;
+        int size = 4 + 4 + 8 + 3 * 8 + 4 + count * 14 * 8 + 4 + lookup * 2 * 8;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(hash);
+        buffer.putDouble(trajectory.maxVelocity).putDouble(trajectory.maxAcceleration).putDouble(trajectory.maxJerk);
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) {
+            writeDoubles(buffer, trajectory.splines[i].x);
+            writeDoubles(buffer, trajectory.splines[i].y);
+            buffer.putDouble(trajectory.startHeading[i]).putDouble(trajectory.endHeading[i]);
+        }
+        buffer.putInt(lookup);
+        writeDoubles(buffer, trajectory.lutLength);
+        writeDoubles(buffer, trajectory.lutParam);
+        buffer.flip();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            RobotLog.ww(TAG, "could not create %s", directory.getPath());
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            RobotLog.ww(TAG, "could not write %s: %s", file.getName(), e.toString());
+        }
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        return values;
+    }
+
+    private static void writeDoubles(ByteBuffer buffer, double[] values) {
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+    }
+}
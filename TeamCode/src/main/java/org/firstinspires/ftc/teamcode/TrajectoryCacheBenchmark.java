@@ -0,0 +1,56 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+// Compares loading a trajectory from the TrajectoryCache to building it again
+//     No hardware is touched and nothing is driven. The path is an arbitrary
+//     test shape with about as many pieces as an Auto would use, none of the
+//     Autos follow trajectories yet (see MecanumDrive.followTrajectory).
+@TeleOp(name = "Trajectory Cache Benchmark", group = "Tests")
+public class TrajectoryCacheBenchmark extends LinearOpMode {
+
+    static final String ROUTINE = "benchmark";
+    final int PASSES = 20;
+
+    @Override
+    public void runOpMode() {
+        TrajectoryBuilder builder = new TrajectoryBuilder(new Pose(0, 0, 0))
+                .splineTo(24, 12, 45)
+                .splineTo(48, 0, -45)
+                .splineTo(60, -24, -90)
+                .splineTo(48, -48, 180);
+        double maxVelocity = 55 * 0.35;
+        double maxAcceleration = 60;
+        double maxJerk = 400;
+        TrajectoryCache cache = new TrajectoryCache();
+
+        telemetry.addData(">", "Press play to start the benchmark");
+        telemetry.update();
+        waitForStart();
+
+        // first call writes the file if it is missing or stale
+        cache.get(ROUTINE, builder, maxVelocity, maxAcceleration, maxJerk);
+        String state = cache.lastWasHit ? "up to date" : "rebuilt";
+
+        double loadMs = 0;
+        double buildMs = 0;
+        for (int pass = 0; pass < PASSES && opModeIsActive(); pass++) {
+            cache.get(ROUTINE, builder, maxVelocity, maxAcceleration, maxJerk);
+            loadMs += cache.lastLoadNanos / 1e6;
+
+            long start = System.nanoTime();
+            builder.build(maxVelocity, maxAcceleration, maxJerk);
+            buildMs += (System.nanoTime() - start) / 1e6;
+        }
+
+        telemetry.addData("Cache file", "%s", state);
+        telemetry.addData("Load", "%.2f ms", loadMs / PASSES);
+        telemetry.addData("Rebuild", "%.2f ms", buildMs / PASSES);
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+}
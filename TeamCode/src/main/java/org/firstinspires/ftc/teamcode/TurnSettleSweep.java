@@ -0,0 +1,50 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.RobotLog;
+
+// Turns through a sweep of angles and reports turn-to-settle time for each
+//     Every angle is turned one way and then back, so the robot ends up where
+//     it started. Use it to tune HeadingController, the settle time and the
+//     error once settled are the numbers to watch.
+@TeleOp(name = "Turn Settle Sweep", group = "Tests")
+public class TurnSettleSweep extends LinearOpMode {
+
+    final double[] ANGLES = {15, 30, 45, 90, 135, 180};
+
+    @Override
+    public void runOpMode() {
+        Robot robot = new Robot(hardwareMap, new ElapsedTime());
+        MecanumDrive drive = robot.drive;
+
+        telemetry.addData(">", "Press play to start the sweep, needs room to spin");
+        telemetry.update();
+        waitForStart();
+
+        for (int i = 0; i < ANGLES.length * 2 && opModeIsActive(); i++) {
+            double degrees = i % 2 == 0 ? ANGLES[i / 2] : -ANGLES[i / 2];
+
+            DriveMotion turn = drive.turnAsync(degrees);
+            long start = System.nanoTime();
+            while (opModeIsActive() && !turn.update()) {
+                drive.timers.poll();
+            }
+            turn.cancel();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            drive.readState();
+            double error = drive.headingController.getError(drive.heading);
+            telemetry.addData(String.format("%+.0f deg", degrees), "%.2f s, error %.2f deg", seconds, error);
+            telemetry.update();
+            RobotLog.ii("TurnSettleSweep", "%+.0f deg settled in %.3f s, error %.2f deg", degrees, seconds, error);
+
+            robot.sleep(0.5);
+        }
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+}
@@ -3,17 +3,17 @@ import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
-import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
-import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 @TeleOp(name="Two-Controller Driver-Controlled")
 public class TwoControllerDriverControlled extends LinearOpMode {
     @Override
     public void runOpMode() throws InterruptedException {
         ElapsedTime time = new ElapsedTime();
         Robot robot = new Robot(hardwareMap, time);
+        robot.drive.limitAcceleration = true; // no wheel slip on stick reversals
+        robot.drive.velocityControl = true;   // same stick response on a full or a tired battery
         double x, y, r, target, targetAngle;
 
-        robot.imu.resetYaw();
+        robot.imuSampler.resetYaw();
 
         //Debouncers
         Debouncer dx = new Debouncer(),
@@ -34,22 +34,37 @@ public class TwoControllerDriverControlled extends LinearOpMode {
 
         LiftControlMode liftControlMode = LiftControlMode.ManualControl;
 
+        // read the hubs once, work from the snapshot, send the writes together
+        RobotCycle cycle = robot.cycle(100);
+
         waitForStart();
         robot.lift.setPositionAsync(0);
+        cycle.start();
 
         while (true) {
             if (!opModeIsActive()) {break;}
+            // one bulk read for the drive and lift encoders this loop
+            DriveStateSnapshot driveState = cycle.read();
+
             //Telemetry
             telemetry.update();
-            telemetry.addData("Pole: ", robot.poleSensor.getDistance(DistanceUnit.CM));
+            telemetry.addData("Pole: ", robot.poleSampler.getFiltered());
             telemetry.addData("target", target);
-            telemetry.addData("IMU heading: ", robot.drive.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES));
+            telemetry.addData("IMU heading: ", robot.drive.yaw);
+            telemetry.addData("IMU sample", "%.1f ms old, %.0f Hz", robot.imuSampler.getAgeMs(), robot.imuSampler.getEffectiveRate());
             telemetry.addData("Target", robot.lift.getTarget());
             telemetry.addData("Position", robot.lift.getPosition());
-            telemetry.addData("Front Right", robot.drive.rightFront.getCurrentPosition());
-            telemetry.addData("Front Left", robot.drive.leftFront.getCurrentPosition());
-            telemetry.addData("Back Right", robot.drive.rightBack.getCurrentPosition());
-            telemetry.addData("Back Left", robot.drive.leftBack.getCurrentPosition());
+            telemetry.addData("Lift stalls", robot.lift.monitor.getStalls());
+            telemetry.addData("Front Right", driveState.position[DriveStateSnapshot.RIGHT_FRONT]);
+            telemetry.addData("Front Left", driveState.position[DriveStateSnapshot.LEFT_FRONT]);
+            telemetry.addData("Back Right", driveState.position[DriveStateSnapshot.RIGHT_BACK]);
+            telemetry.addData("Back Left", driveState.position[DriveStateSnapshot.LEFT_BACK]);
+            telemetry.addData("Pose", robot.drive.getPose());
+            telemetry.addData("Writes sent", robot.commands.getSent());
+            telemetry.addData("Writes skipped", robot.commands.getSkipped());
+            cycle.addTo(telemetry);
+            driveState.readTime.addTo(telemetry);
+            robot.commands.writeTime.addTo(telemetry);
 
             //Movement section
             {
@@ -73,7 +88,7 @@ public class TwoControllerDriverControlled extends LinearOpMode {
                 if (Math.abs(gamepad1.right_stick_x) < 0.05) {
                     if (gyroAssistDebouncer.isPressed(Math.abs(gamepad1.right_stick_x) < 0.05)) {
                         //identifies the desired heading angle to hold. This should only happen once per period of time that the right joystick is < 0.05
-                        target = robot.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES);
+                        target = robot.drive.heading;
                     }
                     robot.drive.calcGyroStabilized(x, y, target);
                 }
@@ -84,20 +99,20 @@ public class TwoControllerDriverControlled extends LinearOpMode {
                 //90 degree turn left/right
                 if (gamepad1.left_trigger > 0.5) {
                     if (turnAroundDebouncer.isPressed(gamepad1.left_trigger > 0.5)){
-                        target = robot.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES) + 90;
+                        target = robot.drive.heading + 90;
                     }
                     robot.drive.calcGyroStabilized(0, 0, target);
                 }
                 if (gamepad1.right_trigger > 0.5) {
                     if (turnAroundDebouncer.isPressed(gamepad1.right_trigger > 0.5)){
-                        target = robot.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES) - 90;
+                        target = robot.drive.heading - 90;
                     }
                     robot.drive.calcGyroStabilized(0, 0, target);
                 }
                 //180 degree turn
                 if (gamepad1.b) {
                     if (turnAroundDebouncer.isPressed(gamepad1.b)) {
-                        target = robot.imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES) + 180;
+                        target = robot.drive.heading + 180;
                     }
                     robot.drive.calcGyroStabilized(0, 0, target);
                 }
@@ -174,17 +189,27 @@ public class TwoControllerDriverControlled extends LinearOpMode {
             telemetry.update();
 
             if (robot.bumperPressed()) {
+                // the blocking calls below need their writes to go out
+                cycle.suspend();
                 robot.grabber.close();
                 robot.sleep(.5);
                 robot.lift.setPosition(robot.lift.getPosition()+500);
                 robot.sleep(.1);
                 robot.drive.backward().goFor(0.5);
                 robot.sleep(.1);
+                cycle.resume();
             }
 
             if (!opModeIsActive()) {break;}
             telemetry.update();
+            cycle.write();
         }
+
+        cycle.suspend();
+        cycle.log();
+        robot.drive.state.readTime.log();
+        robot.commands.writeTime.log();
+        // the sampler threads log their own read times when they stop
     }
 
     private double applyJoystickSmoothing(double n, double a) {
@@ -0,0 +1,68 @@
+package org.firstinspires.ftc.teamcode;
+
+// Closed loop speed control for one wheel, output is in volts
+//     Feedforward does most of the work: kS to get the wheel moving, kV per
+//     tick/s of speed and kA per tick/s^2 of acceleration. PID on the
+//     measured encoder velocity cleans up what the model gets wrong. Working
+//     in volts and dividing by the battery voltage afterwards is what keeps a
+//     move the same speed on a fresh battery and a flat one.
+public class WheelVelocityController {
+
+    public double kS;
+    public double kV;
+    public double kA;
+
+    public double kP;
+    public double kI;
+    public double kD;
+
+    // keeps the integral from winding up while the wheel is held or saturated
+    public double maxIntegral = 2.0; // volts
+
+    private double integral = 0;
+    private double lastError = 0;
+    private boolean hasLast = false;
+
+    public WheelVelocityController(double kS, double kV, double kA, double kP, double kI, double kD) {
+        this.kS = kS;
+        this.kV = kV;
+        this.kA = kA;
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+    }
+
+    // velocities in ticks/s, acceleration in ticks/s^2, dt in seconds
+    public double calculate(double targetVelocity, double targetAcceleration, double measuredVelocity, double dt) {
+        double feedforward = 0;
+        if (targetVelocity != 0) {
+            feedforward = kS * Math.signum(targetVelocity) + kV * targetVelocity + kA * targetAcceleration;
+        }
+
+        double error = targetVelocity - measuredVelocity;
+        double derivative = 0;
+        if (hasLast && dt > 0) {
+            derivative = (error - lastError) / dt;
+        }
+        if (dt > 0) {
+            integral += kI * error * dt;
+            integral = Math.max(-maxIntegral, Math.min(maxIntegral, integral));
+        }
+        lastError = error;
+        hasLast = true;
+
+        // let a stopped wheel coast to rest instead of fighting the last few ticks/s
+        if (targetVelocity == 0 && targetAcceleration == 0) {
+            integral = 0;
+            return 0;
+        }
+
+        return feedforward + kP * error + integral + kD * derivative;
+    }
+
+    public void reset() {
+        integral = 0;
+        lastError = 0;
+        hasLast = false;
+    }
+}
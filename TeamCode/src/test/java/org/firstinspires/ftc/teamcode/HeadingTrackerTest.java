@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+// Feeds HeadingTracker the wrapped yaw an IMU would report for a known spin
+//     The true heading is rate * t, the tracker only sees it through
+//     HeadingController.wrap() plus the rate, like ImuSampler does.
+public class HeadingTrackerTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final long MS = 1000000L;
+
+    // spin at rate deg/s for seconds, sampling every periodMs, checking every sample
+    private static void spin(HeadingTracker tracker, double start, double rate, long periodMs, double seconds) {
+        int samples = (int) Math.round(seconds * 1000 / periodMs);
+        for (int i = 0; i <= samples; i++) {
+            double t = i * periodMs / 1000.0;
+            double truth = start + rate * t;
+            double heading = tracker.update(HeadingController.wrap(truth), rate, i * periodMs * MS);
+            assertEquals("rate " + rate + " period " + periodMs + " ms, sample " + i, truth, heading, EPSILON);
+        }
+    }
+
+    @Test
+    public void followsSpinsAcrossTheSeam() {
+        double[] rates = {90, -90, 720, -720, 1500, -1500, 3000, -3000};
+        long[] periods = {5, 10, 20, 50};
+        for (double rate : rates) {
+            for (long period : periods) {
+                HeadingTracker tracker = new HeadingTracker();
+                spin(tracker, 170, rate, period, 2);
+                assertEquals(0, tracker.getJumps());
+            }
+        }
+    }
+
+    // more than 180 degrees between samples, only the rate can tell which way it went
+    @Test
+    public void followsMoreThanHalfATurnPerSample() {
+        HeadingTracker tracker = new HeadingTracker();
+        spin(tracker, 0, 2500, 100, 3);
+        assertEquals(0, tracker.getJumps());
+
+        tracker = new HeadingTracker();
+        spin(tracker, 0, -2500, 100, 3);
+        assertEquals(0, tracker.getJumps());
+    }
+
+    @Test
+    public void wrappedHeadingStaysInRange() {
+        HeadingTracker tracker = new HeadingTracker();
+        spin(tracker, 0, 1000, 10, 1.35);
+        assertEquals(1350, tracker.getHeading(), EPSILON);
+        assertEquals(-90, tracker.getWrapped(), EPSILON);
+    }
+
+    // the IMU zeroes itself mid spin, the heading carries on from the rate
+    @Test
+    public void ignoresAnImuResetJump() {
+        HeadingTracker tracker = new HeadingTracker();
+        spin(tracker, 0, 200, 10, 0.5); // ends at 100
+
+        // true heading 102, but the IMU now reads 2 from its new zero
+        double heading = tracker.update(2, 200, 510 * MS);
+        assertEquals(102, heading, EPSILON);
+        assertEquals(1, tracker.getJumps());
+
+        // and keeps tracking the spin from the new readings
+        heading = tracker.update(HeadingController.wrap(2 + 200 * 0.5), 200, 1010 * MS);
+        assertEquals(202, heading, EPSILON);
+        assertEquals(1, tracker.getJumps());
+    }
+
+    // a reset we asked for starts again from the next reading, not counted as a jump
+    @Test
+    public void resetStartsFromTheNextReading() {
+        HeadingTracker tracker = new HeadingTracker();
+        spin(tracker, 0, 720, 10, 1); // ends at 720
+        assertEquals(720, tracker.getHeading(), EPSILON);
+
+        tracker.reset();
+        assertEquals(0, tracker.update(0, 0, 2000 * MS), EPSILON);
+        assertEquals(0, tracker.getJumps());
+
+        assertEquals(-30, tracker.update(-30, -300, 2100 * MS), EPSILON);
+        assertEquals(0, tracker.getJumps());
+    }
+}